@@ -6,11 +6,13 @@ import android.media.MediaDataSource;
 import android.media.MediaPlayer;
 import android.media.TimedText;
 import android.net.Uri;
+import android.os.Build;
 import android.text.TextUtils;
 import android.view.Surface;
 import android.view.SurfaceHolder;
 
 import com.dailyyoga.cn.media.AbstractMediaPlayer;
+import com.dailyyoga.cn.media.IMediaPlayer;
 import com.dailyyoga.cn.media.MediaInfo;
 import com.dailyyoga.cn.media.MediaTimedText;
 import com.dailyyoga.cn.media.misc.IMediaDataSource;
@@ -20,6 +22,9 @@ import com.dailyyoga.cn.media.pragma.DebugLog;
 import java.io.FileDescriptor;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 
@@ -30,20 +35,41 @@ import java.util.Map;
  */
 public class AndroidMediaPlayer extends AbstractMediaPlayer {
 
-    private final MediaPlayer mInternalMediaPlayer;
+    // replaced by the pre-prepared next player on each playlist transition
+    private MediaPlayer mInternalMediaPlayer;
     private final AndroidMediaPlayerListenerHolder mInternalListenerAdapter;
+    private final NextItemListener mNextItemListener = new NextItemListener();
     private String mDataSource;
     private MediaDataSource mMediaDataSource;
     private final Object mInitLock = new Object();
     private boolean mIsReleased;
     private static MediaInfo sMediaInfo;
 
+    // carried over to the next playlist item
+    private SurfaceHolder mSurfaceHolder;
+    private Surface mSurface;
+    private boolean mScreenOnWhilePlaying;
+    private int mAudioStreamType = 3;
+    private float mLeftVolume = 1.0f;
+    private float mRightVolume = 1.0f;
+
+    private Context mPlaylistContext;
+    private List<Uri> mPlaylist;
+    private Map<String, String> mPlaylistHeaders;
+    private int mPlaylistIndex;
+    private MediaPlayer mNextMediaPlayer;
+    private boolean mNextPrepared;
+    // the next player was handed to setNextMediaPlayer() and starts by itself
+    private boolean mNextChained;
+    // the current item completed before the next one was prepared
+    private boolean mAdvancePending;
+
     public AndroidMediaPlayer() {
         synchronized (this.mInitLock) {
             this.mInternalMediaPlayer = new MediaPlayer();
         }
 
-        this.mInternalMediaPlayer.setAudioStreamType(3);
+        this.mInternalMediaPlayer.setAudioStreamType(this.mAudioStreamType);
         this.mInternalListenerAdapter = new AndroidMediaPlayerListenerHolder(this);
         this.attachInternalListeners();
     }
@@ -56,7 +82,10 @@ public class AndroidMediaPlayer extends AbstractMediaPlayer {
     public void setDisplay(SurfaceHolder sh) {
         synchronized (this.mInitLock) {
             if (!this.mIsReleased) {
+                this.mSurfaceHolder = sh;
+                this.mSurface = null;
                 this.mInternalMediaPlayer.setDisplay(sh);
+                this.updateNextChain();
             }
 
         }
@@ -65,7 +94,10 @@ public class AndroidMediaPlayer extends AbstractMediaPlayer {
     @TargetApi(14)
     @Override
     public void setSurface(Surface surface) {
+        this.mSurface = surface;
+        this.mSurfaceHolder = null;
         this.mInternalMediaPlayer.setSurface(surface);
+        this.updateNextChain();
     }
 
     @Override
@@ -105,6 +137,36 @@ public class AndroidMediaPlayer extends AbstractMediaPlayer {
         this.mInternalMediaPlayer.setDataSource(this.mMediaDataSource);
     }
 
+    /**
+     * Plays {@code uris} back to back. Each next item is prepared on its own {@link MediaPlayer}
+     * while the current one plays. A video surface can only be connected to one player, so on
+     * completion the surface is moved over and the next player started; without a surface
+     * (audio only) the players are chained with {@link MediaPlayer#setNextMediaPlayer} and the
+     * platform switches without a gap.
+     */
+    @Override
+    public void setPlaylist(Context context, List<Uri> uris, Map<String, String> headers) throws IOException {
+        if (uris == null || uris.isEmpty())
+            throw new IllegalArgumentException("empty playlist");
+
+        this.setDataSource(context, uris.get(0), headers);
+        this.mDataSource = uris.get(0).toString();
+        this.mPlaylistContext = context.getApplicationContext();
+        this.mPlaylist = new ArrayList<>(uris);
+        this.mPlaylistHeaders = headers;
+        this.mPlaylistIndex = 0;
+    }
+
+    @Override
+    public int getCurrentPlaylistIndex() {
+        return this.mPlaylistIndex;
+    }
+
+    // MediaPlayer only selects audio and timed text tracks, video can't be turned off
+    @Override
+    public void setAudioOnly(boolean audioOnly) {
+    }
+
     @Override
     public String getDataSource() {
         return this.mDataSource;
@@ -144,6 +206,7 @@ public class AndroidMediaPlayer extends AbstractMediaPlayer {
 
     @Override
     public void setScreenOnWhilePlaying(boolean screenOn) {
+        this.mScreenOnWhilePlaying = screenOn;
         this.mInternalMediaPlayer.setScreenOnWhilePlaying(screenOn);
     }
 
@@ -192,6 +255,37 @@ public class AndroidMediaPlayer extends AbstractMediaPlayer {
         this.mInternalMediaPlayer.seekTo((int) msec);
     }
 
+    /**
+     * Seek modes need {@link MediaPlayer#seekTo(long, int)} from API 26; older platforms seek
+     * to the closest key frame or exactly depending on the device.
+     */
+    @TargetApi(26)
+    @Override
+    public void seekTo(long msec, int mode) throws IllegalStateException {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+            this.seekTo(msec);
+            return;
+        }
+
+        int platformMode;
+        switch (mode) {
+            case IMediaPlayer.SEEK_CLOSEST_SYNC:
+                platformMode = MediaPlayer.SEEK_CLOSEST_SYNC;
+                break;
+            case IMediaPlayer.SEEK_PREVIOUS_SYNC:
+                platformMode = MediaPlayer.SEEK_PREVIOUS_SYNC;
+                break;
+            case IMediaPlayer.SEEK_NEXT_SYNC:
+                platformMode = MediaPlayer.SEEK_NEXT_SYNC;
+                break;
+            case IMediaPlayer.SEEK_EXACT:
+            default:
+                platformMode = MediaPlayer.SEEK_CLOSEST;
+                break;
+        }
+        this.mInternalMediaPlayer.seekTo(msec, platformMode);
+    }
+
     @Override
     public long getCurrentPosition() {
         try {
@@ -215,6 +309,7 @@ public class AndroidMediaPlayer extends AbstractMediaPlayer {
     @Override
     public void release() {
         this.mIsReleased = true;
+        this.clearPlaylist();
         this.mInternalMediaPlayer.release();
         this.releaseMediaDataSource();
         this.resetListeners();
@@ -229,6 +324,7 @@ public class AndroidMediaPlayer extends AbstractMediaPlayer {
             DebugLog.printStackTrace(var2);
         }
 
+        this.clearPlaylist();
         this.releaseMediaDataSource();
         this.resetListeners();
         this.attachInternalListeners();
@@ -246,6 +342,8 @@ public class AndroidMediaPlayer extends AbstractMediaPlayer {
 
     @Override
     public void setVolume(float leftVolume, float rightVolume) {
+        this.mLeftVolume = leftVolume;
+        this.mRightVolume = rightVolume;
         this.mInternalMediaPlayer.setVolume(leftVolume, rightVolume);
     }
 
@@ -283,6 +381,7 @@ public class AndroidMediaPlayer extends AbstractMediaPlayer {
 
     @Override
     public void setAudioStreamType(int streamtype) {
+        this.mAudioStreamType = streamtype;
         this.mInternalMediaPlayer.setAudioStreamType(streamtype);
     }
 
@@ -290,6 +389,127 @@ public class AndroidMediaPlayer extends AbstractMediaPlayer {
     public void setKeepInBackground(boolean keepInBackground) {
     }
 
+    private boolean hasNextItem() {
+        return this.mPlaylist != null && this.mPlaylistIndex + 1 < this.mPlaylist.size();
+    }
+
+    private void prepareNextItem() {
+        this.releaseNextMediaPlayer();
+        if (!this.hasNextItem())
+            return;
+
+        MediaPlayer next = new MediaPlayer();
+        next.setAudioStreamType(this.mAudioStreamType);
+        next.setOnPreparedListener(this.mNextItemListener);
+        next.setOnErrorListener(this.mNextItemListener);
+        try {
+            next.setDataSource(this.mPlaylistContext, this.mPlaylist.get(this.mPlaylistIndex + 1), this.mPlaylistHeaders);
+            next.prepareAsync();
+        } catch (IOException | RuntimeException e) {
+            DebugLog.printStackTrace(e);
+            next.release();
+            return;
+        }
+        this.mNextMediaPlayer = next;
+    }
+
+    private void releaseNextMediaPlayer() {
+        if (this.mNextMediaPlayer != null) {
+            if (this.mNextChained) {
+                try {
+                    this.mInternalMediaPlayer.setNextMediaPlayer(null);
+                } catch (IllegalStateException e) {
+                    DebugLog.printStackTrace(e);
+                }
+            }
+            this.mNextMediaPlayer.release();
+            this.mNextMediaPlayer = null;
+        }
+        this.mNextPrepared = false;
+        this.mNextChained = false;
+    }
+
+    private void clearPlaylist() {
+        this.releaseNextMediaPlayer();
+        this.mAdvancePending = false;
+        this.mPlaylist = null;
+        this.mPlaylistHeaders = null;
+        this.mPlaylistContext = null;
+        this.mPlaylistIndex = 0;
+    }
+
+    // setNextMediaPlayer() only hands over audio, so chain only while no surface is attached
+    private void updateNextChain() {
+        boolean chain = this.mNextPrepared && this.mSurface == null && this.mSurfaceHolder == null;
+        if (chain == this.mNextChained)
+            return;
+
+        try {
+            this.mInternalMediaPlayer.setNextMediaPlayer(chain ? this.mNextMediaPlayer : null);
+            this.mNextChained = chain;
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            DebugLog.printStackTrace(e);
+        }
+    }
+
+    private void onItemCompleted() {
+        if (!this.hasNextItem()) {
+            this.notifyOnCompletion();
+            return;
+        }
+
+        if (this.mNextChained) {
+            this.advance(true);
+        } else if (this.mNextPrepared) {
+            this.advance(false);
+        } else {
+            // still preparing, or failed earlier and is retried once
+            if (this.mNextMediaPlayer == null)
+                this.prepareNextItem();
+            if (this.mNextMediaPlayer == null) {
+                this.notifyOnError(IMediaPlayer.MEDIA_ERROR_UNKNOWN, IMediaPlayer.MEDIA_ERROR_IO, null);
+                return;
+            }
+            this.mAdvancePending = true;
+            this.notifyOnInfo(IMediaPlayer.MEDIA_INFO_BUFFERING_START, 0);
+        }
+    }
+
+    private void advance(boolean started) {
+        MediaPlayer previous = this.mInternalMediaPlayer;
+        MediaPlayer next = this.mNextMediaPlayer;
+        boolean wasPending = this.mAdvancePending;
+        this.mNextMediaPlayer = null;
+        this.mNextPrepared = false;
+        this.mNextChained = false;
+        this.mAdvancePending = false;
+
+        // releasing disconnects the surface so the next player can connect to it
+        synchronized (this.mInitLock) {
+            this.mInternalMediaPlayer = next;
+        }
+        previous.release();
+        this.attachInternalListeners();
+        if (this.mSurfaceHolder != null) {
+            next.setDisplay(this.mSurfaceHolder);
+        } else if (this.mSurface != null) {
+            next.setSurface(this.mSurface);
+        }
+        next.setScreenOnWhilePlaying(this.mScreenOnWhilePlaying);
+        next.setVolume(this.mLeftVolume, this.mRightVolume);
+        if (!started)
+            next.start();
+
+        this.mPlaylistIndex++;
+        this.mDataSource = this.mPlaylist.get(this.mPlaylistIndex).toString();
+        if (wasPending)
+            this.notifyOnInfo(IMediaPlayer.MEDIA_INFO_BUFFERING_END, 0);
+        // reported by the next player before our listeners were attached
+        this.notifyOnVideoSizeChanged(next.getVideoWidth(), next.getVideoHeight(), 1, 1);
+        this.notifyOnPlaylistTransition(this.mPlaylistIndex);
+        this.prepareNextItem();
+    }
+
     private void attachInternalListeners() {
         this.mInternalMediaPlayer.setOnPreparedListener(this.mInternalListenerAdapter);
         this.mInternalMediaPlayer.setOnBufferingUpdateListener(this.mInternalListenerAdapter);
@@ -355,7 +575,7 @@ public class AndroidMediaPlayer extends AbstractMediaPlayer {
         public void onCompletion(MediaPlayer mp) {
             AndroidMediaPlayer self = this.mWeakMediaPlayer.get();
             if (self != null) {
-                AndroidMediaPlayer.this.notifyOnCompletion();
+                AndroidMediaPlayer.this.onItemCompleted();
             }
         }
 
@@ -364,6 +584,7 @@ public class AndroidMediaPlayer extends AbstractMediaPlayer {
             AndroidMediaPlayer self = this.mWeakMediaPlayer.get();
             if (self != null) {
                 AndroidMediaPlayer.this.notifyOnPrepared();
+                AndroidMediaPlayer.this.prepareNextItem();
             }
         }
 
@@ -380,6 +601,36 @@ public class AndroidMediaPlayer extends AbstractMediaPlayer {
         }
     }
 
+    private class NextItemListener implements android.media.MediaPlayer.OnPreparedListener,
+            android.media.MediaPlayer.OnErrorListener {
+
+        @Override
+        public void onPrepared(MediaPlayer mp) {
+            if (mp != AndroidMediaPlayer.this.mNextMediaPlayer)
+                return;
+
+            AndroidMediaPlayer.this.mNextPrepared = true;
+            if (AndroidMediaPlayer.this.mAdvancePending) {
+                AndroidMediaPlayer.this.advance(false);
+            } else {
+                AndroidMediaPlayer.this.updateNextChain();
+            }
+        }
+
+        @Override
+        public boolean onError(MediaPlayer mp, int what, int extra) {
+            if (mp != AndroidMediaPlayer.this.mNextMediaPlayer)
+                return true;
+
+            AndroidMediaPlayer.this.releaseNextMediaPlayer();
+            if (AndroidMediaPlayer.this.mAdvancePending) {
+                AndroidMediaPlayer.this.mAdvancePending = false;
+                AndroidMediaPlayer.this.notifyOnError(what, extra, null);
+            }
+            return true;
+        }
+    }
+
     @TargetApi(23)
     private static class MediaDataSourceProxy extends MediaDataSource {
         private final IMediaDataSource mMediaDataSource;
@@ -390,7 +641,7 @@ public class AndroidMediaPlayer extends AbstractMediaPlayer {
 
         @Override
         public int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
-            return this.mMediaDataSource.readAt(position, buffer, offset, size);
+            return this.mMediaDataSource.readAt(position, ByteBuffer.wrap(buffer, offset, size));
         }
 
         @Override
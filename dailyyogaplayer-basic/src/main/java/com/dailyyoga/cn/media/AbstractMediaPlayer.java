@@ -17,8 +17,15 @@
 
 package com.dailyyoga.cn.media;
 
+import android.content.Context;
+import android.net.Uri;
+
 import com.dailyyoga.cn.media.misc.IMediaDataSource;
 
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
 
 @SuppressWarnings("WeakerAccess")
 public abstract class AbstractMediaPlayer implements IMediaPlayer {
@@ -30,6 +37,7 @@ public abstract class AbstractMediaPlayer implements IMediaPlayer {
     private OnErrorListener mOnErrorListener;
     private OnInfoListener mOnInfoListener;
     private OnTimedTextListener mOnTimedTextListener;
+    private OnPlaylistTransitionListener mOnPlaylistTransitionListener;
 
     public final void setOnPreparedListener(OnPreparedListener listener) {
         mOnPreparedListener = listener;
@@ -65,6 +73,10 @@ public abstract class AbstractMediaPlayer implements IMediaPlayer {
         mOnTimedTextListener = listener;
     }
 
+    public final void setOnPlaylistTransitionListener(OnPlaylistTransitionListener listener) {
+        mOnPlaylistTransitionListener = listener;
+    }
+
     public void resetListeners() {
         mOnPreparedListener = null;
         mOnBufferingUpdateListener = null;
@@ -74,6 +86,7 @@ public abstract class AbstractMediaPlayer implements IMediaPlayer {
         mOnErrorListener = null;
         mOnInfoListener = null;
         mOnTimedTextListener = null;
+        mOnPlaylistTransitionListener = null;
     }
 
     protected final void notifyOnPrepared() {
@@ -116,7 +129,32 @@ public abstract class AbstractMediaPlayer implements IMediaPlayer {
             mOnTimedTextListener.onTimedText(this, text);
     }
 
+    protected final void notifyOnPlaylistTransition(int index) {
+        if (mOnPlaylistTransitionListener != null)
+            mOnPlaylistTransitionListener.onPlaylistTransition(this, index);
+    }
+
     public void setDataSource(IMediaDataSource mediaDataSource) {
         throw new UnsupportedOperationException();
     }
+
+    public void seekTo(long msec, int mode) throws IllegalStateException {
+        seekTo(msec);
+    }
+
+    public void setPlaylist(Context context, List<Uri> uris, Map<String, String> headers)
+            throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    public int getCurrentPlaylistIndex() {
+        return 0;
+    }
+
+    public void setAudioOnly(boolean audioOnly) {
+    }
+
+    public boolean isAudioOnly() {
+        return false;
+    }
 }
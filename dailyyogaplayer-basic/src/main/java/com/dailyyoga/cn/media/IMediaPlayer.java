@@ -29,6 +29,7 @@ import com.dailyyoga.cn.media.misc.ITrackInfo;
 
 import java.io.FileDescriptor;
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 public interface IMediaPlayer {
@@ -68,6 +69,15 @@ public interface IMediaPlayer {
     int MEDIA_ERROR_UNSUPPORTED = -1010;
     int MEDIA_ERROR_TIMED_OUT = -110;
 
+    /** Seek to the exact position, decoding from the preceding key frame. */
+    int SEEK_EXACT = 0;
+    /** Seek to the key frame closest to the position. */
+    int SEEK_CLOSEST_SYNC = 1;
+    /** Seek to the key frame at or before the position. */
+    int SEEK_PREVIOUS_SYNC = 2;
+    /** Seek to the key frame at or after the position. */
+    int SEEK_NEXT_SYNC = 3;
+
     void setDisplay(SurfaceHolder sh);
 
     void setDataSource(Context context, Uri uri)
@@ -103,6 +113,12 @@ public interface IMediaPlayer {
 
     void seekTo(long msec) throws IllegalStateException;
 
+    /**
+     * @param mode one of the {@code SEEK_*} constants; key frame seeks are cheap and suit
+     *             scrubbing, backends that can't honour a mode seek as {@link #seekTo(long)}
+     */
+    void seekTo(long msec, int mode) throws IllegalStateException;
+
     long getCurrentPosition();
 
     long getDuration();
@@ -179,6 +195,21 @@ public interface IMediaPlayer {
         void onTimedText(IMediaPlayer mp, MediaTimedText text);
     }
 
+    /**
+     * Called on the main thread when playback moves on to item {@code index} of a playlist.
+     * <p>
+     * The exo and android backends report it when the item actually starts playing. ijk can't see
+     * the switch in its output, so it estimates it: when the demuxer opens the next item, the
+     * duration buffered at that moment is added to the current position, and the transition is
+     * reported once playback reaches that point. The estimate can be off by up to that buffer
+     * depth, e.g. when the audio and video queues hold different durations or the item's
+     * timestamps don't start at zero, so with deep buffers the callback can come seconds early
+     * or late.
+     */
+    interface OnPlaylistTransitionListener {
+        void onPlaylistTransition(IMediaPlayer mp, int index);
+    }
+
     /*--------------------
      * Optional
      */
@@ -212,4 +243,31 @@ public interface IMediaPlayer {
      * AndroidMediaPlayer: M:
      */
     void setDataSource(IMediaDataSource mediaDataSource);
+
+    /*--------------------
+     * Playlist
+     */
+
+    /**
+     * Plays {@code uris} back to back, buffering the next item while the current one plays.
+     * {@link OnCompletionListener} fires once, after the last item.
+     */
+    void setPlaylist(Context context, List<Uri> uris, Map<String, String> headers)
+            throws IOException, IllegalArgumentException, SecurityException, IllegalStateException;
+
+    int getCurrentPlaylistIndex();
+
+    void setOnPlaylistTransitionListener(OnPlaylistTransitionListener listener);
+
+    /*--------------------
+     * Background
+     */
+
+    /**
+     * Stops decoding video, and loading it where the backend can, while audio keeps playing.
+     * Turning it off resumes video in sync with the audio, without re-preparing.
+     */
+    void setAudioOnly(boolean audioOnly);
+
+    boolean isAudioOnly();
 }
@@ -29,6 +29,7 @@ import com.dailyyoga.cn.media.misc.ITrackInfo;
 
 import java.io.FileDescriptor;
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 
@@ -83,6 +84,27 @@ public class MediaPlayerProxy implements IMediaPlayer {
         mBackEndMediaPlayer.setDataSource(mediaDataSource);
     }
 
+    @Override
+    public void setPlaylist(Context context, List<Uri> uris, Map<String, String> headers)
+            throws IOException, IllegalArgumentException, SecurityException, IllegalStateException {
+        mBackEndMediaPlayer.setPlaylist(context, uris, headers);
+    }
+
+    @Override
+    public int getCurrentPlaylistIndex() {
+        return mBackEndMediaPlayer.getCurrentPlaylistIndex();
+    }
+
+    @Override
+    public void setAudioOnly(boolean audioOnly) {
+        mBackEndMediaPlayer.setAudioOnly(audioOnly);
+    }
+
+    @Override
+    public boolean isAudioOnly() {
+        return mBackEndMediaPlayer.isAudioOnly();
+    }
+
     @Override
     public String getDataSource() {
         return mBackEndMediaPlayer.getDataSource();
@@ -133,6 +155,11 @@ public class MediaPlayerProxy implements IMediaPlayer {
         mBackEndMediaPlayer.seekTo(msec);
     }
 
+    @Override
+    public void seekTo(long msec, int mode) throws IllegalStateException {
+        mBackEndMediaPlayer.seekTo(msec, mode);
+    }
+
     @Override
     public long getCurrentPosition() {
         return mBackEndMediaPlayer.getCurrentPosition();
@@ -298,6 +325,21 @@ public class MediaPlayerProxy implements IMediaPlayer {
         }
     }
 
+    @Override
+    public void setOnPlaylistTransitionListener(OnPlaylistTransitionListener listener) {
+        if (listener != null) {
+            final OnPlaylistTransitionListener finalListener = listener;
+            mBackEndMediaPlayer.setOnPlaylistTransitionListener(new OnPlaylistTransitionListener() {
+                @Override
+                public void onPlaylistTransition(IMediaPlayer mp, int index) {
+                    finalListener.onPlaylistTransition(MediaPlayerProxy.this, index);
+                }
+            });
+        } else {
+            mBackEndMediaPlayer.setOnPlaylistTransitionListener(null);
+        }
+    }
+
     @Override
     public void setAudioStreamType(int streamtype) {
         mBackEndMediaPlayer.setAudioStreamType(streamtype);
@@ -18,11 +18,38 @@
 package com.dailyyoga.cn.media.misc;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 @SuppressWarnings("RedundantThrows")
 public interface IMediaDataSource {
     int	 readAt(long position, byte[] buffer, int offset, int size) throws IOException;
 
+    /**
+     * Reads up to {@code buffer.remaining()} bytes at {@code position} into {@code buffer},
+     * advancing its position. Sources that can fill a (direct) buffer without an intermediate
+     * array should override this; the default adapts to {@link #readAt(long, byte[], int, int)}.
+     *
+     * @return the number of bytes read, or -1 at end of stream
+     */
+    default int readAt(long position, ByteBuffer buffer) throws IOException {
+        int size = buffer.remaining();
+        if (size == 0)
+            return 0;
+
+        if (buffer.hasArray()) {
+            int read = readAt(position, buffer.array(), buffer.arrayOffset() + buffer.position(), size);
+            if (read > 0)
+                buffer.position(buffer.position() + read);
+            return read;
+        }
+
+        byte[] temp = new byte[size];
+        int read = readAt(position, temp, 0, size);
+        if (read > 0)
+            buffer.put(temp, 0, read);
+        return read;
+    }
+
     long getSize() throws IOException;
 
     void close() throws IOException;
@@ -2,6 +2,10 @@ package com.dailyyoga.cn.media.example;
 
 import androidx.multidex.MultiDexApplication;
 
+import com.dailyyoga.cn.media.exo.DailyyogaExoMediaPlayer;
+
+import tv.danmaku.ijk.media.player.IjkMediaPlayer;
+
 /**
  * @author: YougaKingWu@gmail.com
  * @created on: 3/29/21 2:16 PM
@@ -12,5 +16,7 @@ public class Application extends MultiDexApplication {
     @Override
     public void onCreate() {
         super.onCreate();
+        DailyyogaExoMediaPlayer.warmUp(this);
+        IjkMediaPlayer.warmUp(null);
     }
 }
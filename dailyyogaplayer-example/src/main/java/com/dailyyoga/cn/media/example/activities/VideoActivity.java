@@ -203,6 +203,15 @@ public class VideoActivity extends AppCompatActivity implements TracksFragment.I
         super.onBackPressed();
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+
+        if (mVideoView.isBackgroundPlayEnabled()) {
+            mVideoView.enterForeground();
+        }
+    }
+
     @Override
     protected void onStop() {
         super.onStop();
@@ -30,7 +30,9 @@ import android.widget.SeekBar.OnSeekBarChangeListener;
 
 import androidx.constraintlayout.widget.ConstraintLayout;
 
+import com.dailyyoga.cn.media.DailyyogaVideoView;
 import com.dailyyoga.cn.media.IMediaController;
+import com.dailyyoga.cn.media.IMediaPlayer;
 import com.dailyyoga.cn.media.example.R;
 import com.dailyyoga.cn.media.example.RxScheduler;
 import com.dailyyoga.cn.media.example.databinding.MediaControllerBinding;
@@ -419,6 +421,14 @@ public class AndroidMediaController extends ConstraintLayout implements IMediaCo
         }
     }
 
+    private void seekTo(int position, int mode) {
+        if (mPlayer instanceof DailyyogaVideoView) {
+            ((DailyyogaVideoView) mPlayer).seekTo(position, mode);
+        } else {
+            mPlayer.seekTo(position);
+        }
+    }
+
     private void doPauseResume() {
         if (mPlayer.isPlaying()) {
             mPlayer.pause();
@@ -463,12 +473,14 @@ public class AndroidMediaController extends ConstraintLayout implements IMediaCo
             }
             long newPosition = (mDuration * progress) / 1000L;
             Log.w(TAG, "onProgressChanged()--progress:" + mPlayer.getCurrentPosition() + "--" + newPosition);
-            mPlayer.seekTo((int) newPosition);
+            // key frame seeks keep up with the thumb, the exact position is sought on release
+            seekTo((int) newPosition, mDragging ? IMediaPlayer.SEEK_CLOSEST_SYNC : IMediaPlayer.SEEK_EXACT);
             mBinding.tvTotalTime.setText(stringForTime((int) newPosition));
         }
 
         @Override
         public void onStopTrackingTouch(SeekBar bar) {
+            seekTo((int) ((mDuration * bar.getProgress()) / 1000L), IMediaPlayer.SEEK_EXACT);
             mDragging = false;
             setProgress();
             updatePausePlay();
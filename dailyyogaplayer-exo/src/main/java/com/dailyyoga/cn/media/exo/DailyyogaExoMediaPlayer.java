@@ -25,17 +25,27 @@ import android.view.SurfaceHolder;
 import com.dailyyoga.cn.media.AbstractMediaPlayer;
 import com.dailyyoga.cn.media.IMediaPlayer;
 import com.dailyyoga.cn.media.MediaInfo;
+import com.dailyyoga.cn.media.exo.demo.player.BufferingProfile;
 import com.dailyyoga.cn.media.exo.demo.player.DemoPlayer;
+import com.dailyyoga.cn.media.exo.demo.player.DemoPlayerPool;
+import com.dailyyoga.cn.media.exo.demo.player.DemoPrefetcher;
 import com.dailyyoga.cn.media.exo.demo.player.DemoUtil;
+import com.dailyyoga.cn.media.exo.demo.player.PlaybackStatsCollector;
+import com.dailyyoga.cn.media.exo.demo.player.PlaybackSummary;
 import com.dailyyoga.cn.media.misc.ITrackInfo;
 import com.google.android.exoplayer2.ExoPlaybackException;
 import com.google.android.exoplayer2.ExoPlayer;
 import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.SeekParameters;
 
 import java.io.FileDescriptor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 
+import static com.google.android.exoplayer2.Player.REPEAT_MODE_ALL;
 import static com.google.android.exoplayer2.Player.REPEAT_MODE_OFF;
 import static com.google.android.exoplayer2.Player.REPEAT_MODE_ONE;
 
@@ -47,14 +57,88 @@ public class DailyyogaExoMediaPlayer extends AbstractMediaPlayer {
     private int mVideoHeight;
     private Surface mSurface;
     private String mDataSource;
-    private MediaItem mMediaItem;
+    private List<Uri> mUris;
+    private List<MediaItem> mMediaItems;
     private boolean mIsLooping;
+    private int mBufferingProfile = BufferingProfile.BALANCED;
+    private int mPrepareGeneration;
+    private boolean mLeanPipeline;
+    private int mViewportWidth;
+    private int mViewportHeight;
+    private boolean mPreparePending;
+    private boolean mAudioOnly;
+    private PlaybackStatsCollector mStatsCollector;
 
     public DailyyogaExoMediaPlayer(Context context) {
         mAppContext = context.getApplicationContext();
         mDemoListener = new DemoPlayerListener();
     }
 
+    /**
+     * @param bufferingProfile one of the {@link BufferingProfile} constants, applied on the next
+     *                         {@link #prepareAsync()}
+     */
+    public void setBufferingProfile(int bufferingProfile) {
+        mBufferingProfile = bufferingProfile;
+    }
+
+    public int getBufferingProfile() {
+        return mBufferingProfile;
+    }
+
+    /**
+     * @param leanPipeline use only the MP4 extractors and the video/audio renderers, applied on
+     *                     the next {@link #prepareAsync()}
+     */
+    public void setLeanPipeline(boolean leanPipeline) {
+        mLeanPipeline = leanPipeline;
+    }
+
+    public boolean isLeanPipeline() {
+        return mLeanPipeline;
+    }
+
+    /**
+     * Caps video track selection to the size the video is displayed at, in pixels; 0 removes
+     * the cap. May be called again whenever the layout changes.
+     */
+    public void setViewportSize(int width, int height) {
+        mViewportWidth = width;
+        mViewportHeight = height;
+        if (mInternalPlayer != null)
+            mInternalPlayer.setViewportSize(width, height);
+    }
+
+    /**
+     * @param enabled collect a {@link PlaybackSummary} for each prepared session; takes effect on
+     *                the next {@link #prepareAsync()}
+     */
+    public void setPlaybackStatsEnabled(boolean enabled) {
+        mStatsCollector = enabled ? new PlaybackStatsCollector() : null;
+    }
+
+    /**
+     * @return the quality of experience of the current session so far, or null unless enabled
+     * with {@link #setPlaybackStatsEnabled(boolean)}
+     */
+    public PlaybackSummary getPlaybackSummary() {
+        return mStatsCollector != null ? mStatsCollector.getSummary() : null;
+    }
+
+    @Override
+    public void setAudioOnly(boolean audioOnly) {
+        if (mAudioOnly == audioOnly)
+            return;
+        mAudioOnly = audioOnly;
+        if (mInternalPlayer != null)
+            mInternalPlayer.setVideoDisabled(audioOnly);
+    }
+
+    @Override
+    public boolean isAudioOnly() {
+        return mAudioOnly;
+    }
+
     @Override
     public void setDisplay(SurfaceHolder sh) {
         if (sh == null)
@@ -82,7 +166,29 @@ public class DailyyogaExoMediaPlayer extends AbstractMediaPlayer {
     @Override
     public void setDataSource(Context context, Uri uri, Map<String, String> headers) {
         mDataSource = uri.toString();
-        mMediaItem = DemoUtil.createMediaItem(context, uri, headers);
+        mUris = Collections.singletonList(uri);
+        mMediaItems = Collections.singletonList(DemoUtil.createMediaItem(context, uri, headers));
+    }
+
+    @Override
+    public void setPlaylist(Context context, List<Uri> uris, Map<String, String> headers) {
+        if (uris == null || uris.isEmpty())
+            throw new IllegalArgumentException("empty playlist");
+
+        List<MediaItem> mediaItems = new ArrayList<>(uris.size());
+        for (Uri uri : uris) {
+            mediaItems.add(DemoUtil.createMediaItem(context, uri, headers));
+        }
+        mDataSource = uris.get(0).toString();
+        mUris = new ArrayList<>(uris);
+        mMediaItems = mediaItems;
+    }
+
+    @Override
+    public int getCurrentPlaylistIndex() {
+        if (mInternalPlayer == null)
+            return 0;
+        return mInternalPlayer.getCurrentWindowIndex();
     }
 
     @Override
@@ -101,17 +207,53 @@ public class DailyyogaExoMediaPlayer extends AbstractMediaPlayer {
         return mDataSource;
     }
 
+    /**
+     * Opens the Exo disk cache in the background; call at app start so the first
+     * {@link #prepareAsync()} does not wait for it.
+     */
+    public static void warmUp(Context context) {
+        DemoUtil.initializeAsync(context);
+    }
+
     @Override
     public void prepareAsync() throws IllegalStateException {
-        if (mInternalPlayer != null)
+        if (mInternalPlayer != null || mPreparePending)
             throw new IllegalStateException("can't prepare a prepared player");
 
-        mInternalPlayer = new DemoPlayer(mAppContext);
+        // the cache is opened off the main thread; a reset() before it is ready cancels the prepare
+        final int generation = ++mPrepareGeneration;
+        mPreparePending = true;
+        if (mStatsCollector != null)
+            mStatsCollector.reset();
+        DemoUtil.runWhenInitialized(mAppContext, () -> {
+            if (generation != mPrepareGeneration)
+                return;
+            mPreparePending = false;
+            prepareInternalPlayer();
+        });
+    }
+
+    private void prepareInternalPlayer() {
+        // a running prefetch holds the cache span the player is about to read
+        if (mUris != null) {
+            for (Uri uri : mUris) {
+                DemoPrefetcher.getInstance(mAppContext).cancel(uri);
+            }
+        }
+
+        mInternalPlayer = DemoPlayerPool.getInstance().acquire(mAppContext, mBufferingProfile, mLeanPipeline);
         mInternalPlayer.addListener(mDemoListener);
+        mInternalPlayer.setStatsCollector(mStatsCollector);
 
         if (mSurface != null)
             mInternalPlayer.setSurface(mSurface);
-        mInternalPlayer.setMediaItem(mMediaItem);
+        mInternalPlayer.setRepeatMode(getRepeatMode());
+        mInternalPlayer.setViewportSize(mViewportWidth, mViewportHeight);
+        mInternalPlayer.setVideoDisabled(mAudioOnly);
+        if (mMediaItems.size() == 1)
+            mInternalPlayer.setMediaItem(mMediaItems.get(0));
+        else
+            mInternalPlayer.setMediaItems(mMediaItems);
         mInternalPlayer.prepare();
         mInternalPlayer.setPlayWhenReady(false);
     }
@@ -127,7 +269,7 @@ public class DailyyogaExoMediaPlayer extends AbstractMediaPlayer {
     public void stop() throws IllegalStateException {
         if (mInternalPlayer == null)
             return;
-        mInternalPlayer.release();
+        mInternalPlayer.stop();
     }
 
     @Override
@@ -147,6 +289,8 @@ public class DailyyogaExoMediaPlayer extends AbstractMediaPlayer {
 
     @Override
     public ITrackInfo[] getTrackInfo() {
+        if (mInternalPlayer == null)
+            return null;
         return mInternalPlayer.getTrackInfo();
     }
 
@@ -180,7 +324,29 @@ public class DailyyogaExoMediaPlayer extends AbstractMediaPlayer {
     public void seekTo(long msec) throws IllegalStateException {
         if (mInternalPlayer == null)
             return;
-        mInternalPlayer.seekTo(msec);
+        // parameters set by an earlier seek stick, so a plain seek restores the player default
+        mInternalPlayer.seekTo(msec, SeekParameters.DEFAULT);
+    }
+
+    @Override
+    public void seekTo(long msec, int mode) throws IllegalStateException {
+        if (mInternalPlayer == null)
+            return;
+        mInternalPlayer.seekTo(msec, toSeekParameters(mode));
+    }
+
+    private static SeekParameters toSeekParameters(int mode) {
+        switch (mode) {
+            case SEEK_CLOSEST_SYNC:
+                return SeekParameters.CLOSEST_SYNC;
+            case SEEK_PREVIOUS_SYNC:
+                return SeekParameters.PREVIOUS_SYNC;
+            case SEEK_NEXT_SYNC:
+                return SeekParameters.NEXT_SYNC;
+            case SEEK_EXACT:
+            default:
+                return SeekParameters.EXACT;
+        }
     }
 
     @Override
@@ -209,14 +375,18 @@ public class DailyyogaExoMediaPlayer extends AbstractMediaPlayer {
 
     @Override
     public void reset() {
+        mPrepareGeneration++;
+        mPreparePending = false;
         if (mInternalPlayer != null) {
-            mInternalPlayer.release();
             mInternalPlayer.removeListener(mDemoListener);
+            DemoPlayerPool.getInstance().recycle(mInternalPlayer);
             mInternalPlayer = null;
         }
 
         mSurface = null;
         mDataSource = null;
+        mUris = null;
+        mMediaItems = null;
         mVideoWidth = 0;
         mVideoHeight = 0;
     }
@@ -225,7 +395,14 @@ public class DailyyogaExoMediaPlayer extends AbstractMediaPlayer {
     public void setLooping(boolean looping) {
         mIsLooping = looping;
         if (mInternalPlayer == null) return;
-        mInternalPlayer.setRepeatMode(mIsLooping ? REPEAT_MODE_ONE : REPEAT_MODE_OFF);
+        mInternalPlayer.setRepeatMode(getRepeatMode());
+    }
+
+    // a playlist loops as a whole
+    private int getRepeatMode() {
+        if (!mIsLooping)
+            return REPEAT_MODE_OFF;
+        return mMediaItems != null && mMediaItems.size() > 1 ? REPEAT_MODE_ALL : REPEAT_MODE_ONE;
     }
 
     @Override
@@ -273,7 +450,7 @@ public class DailyyogaExoMediaPlayer extends AbstractMediaPlayer {
 
     @Override
     public void release() {
-        if (mInternalPlayer != null) {
+        if (mInternalPlayer != null || mPreparePending) {
             reset();
 
             mDemoListener = null;
@@ -364,6 +541,13 @@ public class DailyyogaExoMediaPlayer extends AbstractMediaPlayer {
         public void onRenderedFirstFrame() {
             notifyOnInfo(IMediaPlayer.MEDIA_INFO_VIDEO_RENDERING_START, mInternalPlayer.getBufferedPercentage());
         }
+
+        @Override
+        public void onMediaItemTransition(int index) {
+            if (mUris != null && index < mUris.size())
+                mDataSource = mUris.get(index).toString();
+            notifyOnPlaylistTransition(index);
+        }
     }
 
     private DemoPlayerListener mDemoListener;
@@ -0,0 +1,65 @@
+package com.dailyyoga.cn.media.exo.demo.player;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.LoadControl;
+
+/**
+ * Named {@link LoadControl} settings trading time to first frame against rebuffering.
+ * <p>
+ * Each profile sets the min/max buffer, the buffer needed to start playback and to resume after
+ * a rebuffer, and a byte target ({@link C#LENGTH_UNSET} lets the track selection decide).
+ */
+public final class BufferingProfile {
+
+    /** ExoPlayer's defaults. */
+    public static final int BALANCED = 0;
+    /** Starts on a short buffer and keeps less ahead, for quick previews and feeds. */
+    public static final int FAST_START = 1;
+    /** Caps buffered bytes for low-RAM devices. */
+    public static final int LOW_MEMORY = 2;
+    /** Buffers far ahead and waits longer after a stall, for long lessons on flaky networks. */
+    public static final int REBUFFER_AVERSE = 3;
+
+    public static LoadControl buildLoadControl(int profile) {
+        DefaultLoadControl.Builder builder = new DefaultLoadControl.Builder();
+        switch (profile) {
+            case FAST_START:
+                builder.setBufferDurationsMs(15000, 30000, 1000, 2000);
+                break;
+            case LOW_MEMORY:
+                builder.setBufferDurationsMs(10000, 20000, 1500, 3000)
+                        .setTargetBufferBytes(8 * 1024 * 1024)
+                        .setPrioritizeTimeOverSizeThresholds(false);
+                break;
+            case REBUFFER_AVERSE:
+                builder.setBufferDurationsMs(60000, 120000, 2500, 10000);
+                break;
+            case BALANCED:
+            default:
+                builder.setBufferDurationsMs(
+                        DefaultLoadControl.DEFAULT_MIN_BUFFER_MS,
+                        DefaultLoadControl.DEFAULT_MAX_BUFFER_MS,
+                        DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_MS,
+                        DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS);
+                break;
+        }
+        return builder.build();
+    }
+
+    public static String getName(int profile) {
+        switch (profile) {
+            case FAST_START:
+                return "fast-start";
+            case LOW_MEMORY:
+                return "low-memory";
+            case REBUFFER_AVERSE:
+                return "rebuffer-averse";
+            case BALANCED:
+            default:
+                return "balanced";
+        }
+    }
+
+    private BufferingProfile() {}
+}
@@ -17,25 +17,31 @@ package com.dailyyoga.cn.media.exo.demo.player;
 
 import android.content.Context;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.Surface;
 
 import androidx.annotation.Nullable;
 
 import com.dailyyoga.cn.media.misc.ITrackInfo;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.ExoPlaybackException;
 import com.google.android.exoplayer2.ExoPlayer;
 import com.google.android.exoplayer2.MediaItem;
 import com.google.android.exoplayer2.Player;
 import com.google.android.exoplayer2.RenderersFactory;
+import com.google.android.exoplayer2.SeekParameters;
 import com.google.android.exoplayer2.SimpleExoPlayer;
 import com.google.android.exoplayer2.analytics.AnalyticsListener;
 import com.google.android.exoplayer2.source.DefaultMediaSourceFactory;
+import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.MediaSourceFactory;
+import com.google.android.exoplayer2.source.UnrecognizedInputFormatException;
 import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
 import com.google.android.exoplayer2.upstream.DataSource;
-import com.google.android.exoplayer2.util.EventLogger;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 
@@ -61,41 +67,86 @@ public class DemoPlayer implements Player.EventListener, AnalyticsListener {
                                 float pixelWidthHeightRatio);
 
         void onRenderedFirstFrame();
+
+        /** The player moved on to playlist item {@code index}, on its own or by a seek. */
+        void onMediaItemTransition(int index);
     }
 
+    /**
+     * Bits per viewport pixel per second allowed for video: ~0.15 bits per pixel at 30 fps,
+     * doubled so the rendition just above the viewport still fits.
+     */
+    private static final int VIDEO_BITS_PER_PIXEL_SECOND = 9;
+    private static final int MIN_VIEWPORT_VIDEO_BITRATE = 1000 * 1000;
+
     private final SimpleExoPlayer player;
+    private final DefaultTrackSelector trackSelector;
+    private final DefaultTrackSelector.Parameters defaultTrackSelectorParameters;
     private final CopyOnWriteArrayList<Listener> listeners;
 
     private int lastReportedPlaybackState = Player.STATE_IDLE;
     private boolean lastReportedPlayWhenReady;
 
     private Surface surface;
+    private final int bufferingProfile;
+    private final boolean lean;
+    private final DataSource.Factory dataSourceFactory;
+    private boolean fellBackToFullPipeline;
+    private PlaybackStatsCollector statsCollector;
 
     public DemoPlayer(Context context) {
+        this(context, BufferingProfile.BALANCED, false);
+    }
 
-        DefaultTrackSelector trackSelector = new DefaultTrackSelector(context);
+    /**
+     * @param lean register only the MP4 extractors and the video/audio renderers; media the lean
+     *             extractors do not recognize is re-prepared once with the full extractor set
+     */
+    public DemoPlayer(Context context, int bufferingProfile, boolean lean) {
+        long startMs = SystemClock.elapsedRealtime();
+        this.bufferingProfile = bufferingProfile;
+        this.lean = lean;
+
+        trackSelector = new DefaultTrackSelector(context);
+        defaultTrackSelectorParameters = trackSelector.getParameters();
 
         RenderersFactory renderersFactory =
-                DemoUtil.buildRenderersFactory(/* context= */ context, true);
-        DataSource.Factory dataSourceFactory = DemoUtil.getDataSourceFactory(/* context= */ context);
-        MediaSourceFactory mediaSourceFactory = new DefaultMediaSourceFactory(dataSourceFactory);
+                DemoUtil.buildRenderersFactory(/* context= */ context, true, lean);
+        dataSourceFactory = DemoUtil.getDataSourceFactory(/* context= */ context);
+        MediaSourceFactory mediaSourceFactory = lean
+                ? new DefaultMediaSourceFactory(dataSourceFactory, DemoUtil.buildLeanExtractorsFactory())
+                : new DefaultMediaSourceFactory(dataSourceFactory);
 
         player = new SimpleExoPlayer.Builder(/* context= */ context, renderersFactory)
                 .setMediaSourceFactory(mediaSourceFactory)
                 .setTrackSelector(trackSelector)
+                .setLoadControl(BufferingProfile.buildLoadControl(bufferingProfile))
+                .setBandwidthMeter(SharedBandwidthMeter.get(context))
                 .build();
 
         player.addListener(this);
-        player.addAnalyticsListener(new EventLogger(/* trackSelector= */ trackSelector));
         player.addAnalyticsListener(this);
 
         listeners = new CopyOnWriteArrayList<>();
+        // off by default, enable with "adb shell setprop log.tag.DemoPlayer DEBUG" to compare lean and full
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "built in " + (SystemClock.elapsedRealtime() - startMs) + "ms, lean: " + lean
+                    + ", renderers: " + player.getRendererCount());
+        }
     }
 
     public void setMediaItem(MediaItem mediaItem) {
         player.setMediaItem(mediaItem);
     }
 
+    /**
+     * Sets a playlist played back to back. ExoPlayer concatenates the items into one timeline and
+     * loads the next item once the current one is fully buffered, so transitions are gapless.
+     */
+    public void setMediaItems(List<MediaItem> mediaItems) {
+        player.setMediaItems(mediaItems);
+    }
+
     public void addListener(Listener listener) {
         listeners.add(listener);
     }
@@ -104,6 +155,15 @@ public class DemoPlayer implements Player.EventListener, AnalyticsListener {
         listeners.remove(listener);
     }
 
+    /** Attaches {@code statsCollector} to this player's events, replacing the previous one. */
+    public void setStatsCollector(@Nullable PlaybackStatsCollector statsCollector) {
+        if (this.statsCollector != null)
+            player.removeAnalyticsListener(this.statsCollector);
+        this.statsCollector = statsCollector;
+        if (statsCollector != null)
+            player.addAnalyticsListener(statsCollector);
+    }
+
     public void setSurface(Surface surface) {
         this.surface = surface;
         player.setVideoSurface(this.surface);
@@ -113,6 +173,47 @@ public class DemoPlayer implements Player.EventListener, AnalyticsListener {
         return surface;
     }
 
+    /**
+     * Limits video track selection to the size the video is rendered at: the smallest rendition
+     * covering the viewport is preferred and the video bitrate is capped in proportion to its
+     * pixel count. A non-positive size removes the limits.
+     */
+    public void setViewportSize(int width, int height) {
+        DefaultTrackSelector.ParametersBuilder builder = trackSelector.buildUponParameters();
+        if (width <= 0 || height <= 0) {
+            builder.clearViewportSizeConstraints()
+                    .setMaxVideoBitrate(defaultTrackSelectorParameters.maxVideoBitrate);
+        } else {
+            long bitrate = (long) width * height * VIDEO_BITS_PER_PIXEL_SECOND;
+            builder.setViewportSize(width, height, /* viewportOrientationMayChange= */ false)
+                    .setMaxVideoBitrate((int) Math.min(Integer.MAX_VALUE,
+                            Math.max(MIN_VIEWPORT_VIDEO_BITRATE, bitrate)));
+        }
+        trackSelector.setParameters(builder);
+    }
+
+    /**
+     * Disables the video renderers through track selection: no video track is selected, so
+     * adaptive streams stop loading video and nothing is decoded. Enabling them again reselects
+     * video at the current position.
+     */
+    public void setVideoDisabled(boolean disabled) {
+        DefaultTrackSelector.ParametersBuilder builder = trackSelector.buildUponParameters();
+        for (int i = 0; i < player.getRendererCount(); i++) {
+            if (player.getRendererType(i) == C.TRACK_TYPE_VIDEO)
+                builder.setRendererDisabled(i, disabled);
+        }
+        trackSelector.setParameters(builder);
+    }
+
+    public int getBufferingProfile() {
+        return bufferingProfile;
+    }
+
+    public boolean isLean() {
+        return lean;
+    }
+
     public void prepare() {
         maybeReportPlayerState();
         player.prepare();
@@ -123,9 +224,40 @@ public class DemoPlayer implements Player.EventListener, AnalyticsListener {
     }
 
     public void seekTo(long positionMs) {
+        seekTo(positionMs, SeekParameters.EXACT);
+    }
+
+    /** Seeks with {@code seekParameters}, which stay in effect for later seeks too. */
+    public void seekTo(long positionMs, SeekParameters seekParameters) {
+        player.setSeekParameters(seekParameters);
         player.seekTo(positionMs);
     }
 
+    public void stop() {
+        player.stop();
+    }
+
+    /**
+     * Returns the player to the idle state without releasing it: playback is stopped, the
+     * playlist, surface and listeners are cleared, so it can be re-armed with
+     * {@link #setMediaItem(MediaItem)} by the next owner.
+     */
+    public void recycle() {
+        listeners.clear();
+        setStatsCollector(null);
+        player.stop();
+        player.clearMediaItems();
+        player.setPlayWhenReady(false);
+        player.setRepeatMode(Player.REPEAT_MODE_OFF);
+        player.setSeekParameters(SeekParameters.DEFAULT);
+        player.clearVideoSurface();
+        trackSelector.setParameters(defaultTrackSelectorParameters);
+        fellBackToFullPipeline = false;
+        surface = null;
+        lastReportedPlaybackState = Player.STATE_IDLE;
+        lastReportedPlayWhenReady = false;
+    }
+
     public void release() {
         surface = null;
         player.removeListener(this);
@@ -145,6 +277,10 @@ public class DemoPlayer implements Player.EventListener, AnalyticsListener {
         return player.getCurrentPosition();
     }
 
+    public int getCurrentWindowIndex() {
+        return player.getCurrentWindowIndex();
+    }
+
     public long getDuration() {
         return player.getDuration();
     }
@@ -186,8 +322,23 @@ public class DemoPlayer implements Player.EventListener, AnalyticsListener {
         maybeReportPlayerState();
     }
 
+    @Override
+    public void onMediaItemTransition(@Nullable MediaItem mediaItem, int reason) {
+        if (reason != Player.MEDIA_ITEM_TRANSITION_REASON_AUTO
+                && reason != Player.MEDIA_ITEM_TRANSITION_REASON_SEEK)
+            return;
+
+        int index = player.getCurrentWindowIndex();
+        for (Listener listener : listeners) {
+            listener.onMediaItemTransition(index);
+        }
+    }
+
     @Override
     public void onPlayerError(ExoPlaybackException exception) {
+        if (maybeFallBackToFullPipeline(exception))
+            return;
+
         exception.printStackTrace();
         for (Listener listener : listeners) {
             listener.onError(exception);
@@ -208,6 +359,29 @@ public class DemoPlayer implements Player.EventListener, AnalyticsListener {
         }
     }
 
+    private boolean maybeFallBackToFullPipeline(ExoPlaybackException exception) {
+        if (!lean || fellBackToFullPipeline || exception.type != ExoPlaybackException.TYPE_SOURCE
+                || !(exception.getSourceException() instanceof UnrecognizedInputFormatException))
+            return false;
+
+        MediaItem mediaItem = player.getCurrentMediaItem();
+        if (mediaItem == null)
+            return false;
+
+        Log.w(TAG, "lean extractors do not recognize " + mediaItem.playbackProperties + ", retrying with all extractors");
+        fellBackToFullPipeline = true;
+        // rebuild the whole playlist, later items are likely in the same container
+        DefaultMediaSourceFactory fullFactory = new DefaultMediaSourceFactory(dataSourceFactory);
+        int count = player.getMediaItemCount();
+        List<MediaSource> mediaSources = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            mediaSources.add(fullFactory.createMediaSource(player.getMediaItemAt(i)));
+        }
+        player.setMediaSources(mediaSources, player.getCurrentWindowIndex(), player.getCurrentPosition());
+        player.prepare();
+        return true;
+    }
+
     private void maybeReportPlayerState() {
         boolean playWhenReady = player.getPlayWhenReady();
         int playbackState = getPlaybackState();
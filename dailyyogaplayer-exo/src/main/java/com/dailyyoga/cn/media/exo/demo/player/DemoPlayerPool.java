@@ -0,0 +1,130 @@
+package com.dailyyoga.cn.media.exo.demo.player;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Keeps a few idle {@link DemoPlayer}s around so the next prepare skips building the track
+ * selector, renderers and playback thread.
+ * <p>
+ * Players are created and recycled on the main thread, which is their application looper.
+ * At most {@link #setMaxIdlePlayers(int)} players are kept; the oldest one is released when the
+ * pool is full, and players idle for longer than {@link #setIdleTimeoutMs(long)} are released.
+ */
+public final class DemoPlayerPool {
+
+    public static final int DEFAULT_MAX_IDLE_PLAYERS = 2;
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 60 * 1000;
+
+    private static DemoPlayerPool instance;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ArrayDeque<Entry> idlePlayers = new ArrayDeque<>();
+    private final Runnable evictRunnable = this::evictExpired;
+    private int maxIdlePlayers = DEFAULT_MAX_IDLE_PLAYERS;
+    private long idleTimeoutMs = DEFAULT_IDLE_TIMEOUT_MS;
+
+    public static synchronized DemoPlayerPool getInstance() {
+        if (instance == null) {
+            instance = new DemoPlayerPool();
+        }
+        return instance;
+    }
+
+    private DemoPlayerPool() {
+    }
+
+    /**
+     * Returns the most recently recycled idle player built with {@code bufferingProfile} and
+     * {@code lean}, or a new one. The load control, renderers and extractors are fixed at build
+     * time, so other players are skipped.
+     */
+    public DemoPlayer acquire(Context context, int bufferingProfile, boolean lean) {
+        Iterator<Entry> iterator = idlePlayers.descendingIterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.player.getBufferingProfile() == bufferingProfile && entry.player.isLean() == lean) {
+                iterator.remove();
+                scheduleEviction();
+                return entry.player;
+            }
+        }
+        return new DemoPlayer(context.getApplicationContext(), bufferingProfile, lean);
+    }
+
+    /**
+     * Stops and clears {@code player} and keeps it for a later
+     * {@link #acquire(Context, int, boolean)}.
+     */
+    public void recycle(DemoPlayer player) {
+        if (maxIdlePlayers <= 0) {
+            player.release();
+            return;
+        }
+
+        player.recycle();
+        while (idlePlayers.size() >= maxIdlePlayers) {
+            idlePlayers.pollFirst().player.release();
+        }
+        idlePlayers.addLast(new Entry(player, SystemClock.elapsedRealtime()));
+        scheduleEviction();
+    }
+
+    public void setMaxIdlePlayers(int maxIdlePlayers) {
+        this.maxIdlePlayers = maxIdlePlayers;
+        while (idlePlayers.size() > Math.max(maxIdlePlayers, 0)) {
+            idlePlayers.pollFirst().player.release();
+        }
+        scheduleEviction();
+    }
+
+    public void setIdleTimeoutMs(long idleTimeoutMs) {
+        this.idleTimeoutMs = idleTimeoutMs;
+        evictExpired();
+    }
+
+    /** Releases every idle player, e.g. on low memory. */
+    public void clear() {
+        handler.removeCallbacks(evictRunnable);
+        while (!idlePlayers.isEmpty()) {
+            idlePlayers.pollFirst().player.release();
+        }
+    }
+
+    private void evictExpired() {
+        long now = SystemClock.elapsedRealtime();
+        Iterator<Entry> iterator = idlePlayers.iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (now - entry.idleSince >= idleTimeoutMs) {
+                iterator.remove();
+                entry.player.release();
+            }
+        }
+        scheduleEviction();
+    }
+
+    private void scheduleEviction() {
+        handler.removeCallbacks(evictRunnable);
+        Entry oldest = idlePlayers.peekFirst();
+        if (oldest != null) {
+            long delay = oldest.idleSince + idleTimeoutMs - SystemClock.elapsedRealtime();
+            handler.postDelayed(evictRunnable, Math.max(delay, 0));
+        }
+    }
+
+    private static final class Entry {
+        final DemoPlayer player;
+        final long idleSince;
+
+        Entry(DemoPlayer player, long idleSince) {
+            this.player = player;
+            this.idleSince = idleSince;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.dailyyoga.cn.media.exo.demo.player;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheWriter;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Warms the head of upcoming media into the cache players read through
+ * ({@link DemoUtil#getCacheDataSourceFactory(Context)}), so their first segments are served from
+ * disk when they are prepared.
+ * <p>
+ * Requests run on a small bounded executor, highest priority first and in submission order
+ * within a priority. Requesting a URI that is already queued updates its priority and length.
+ * <p>
+ * The cache is opened by {@link DemoUtil#initializeAsync(Context)} and the prefetch workers,
+ * never by the thread calling into the prefetcher.
+ */
+public final class DemoPrefetcher {
+
+    private static final String TAG = DemoPrefetcher.class.getSimpleName();
+
+    public static final int PRIORITY_LOW = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_HIGH = 2;
+
+    public static final long DEFAULT_PREFETCH_BYTES = 2 * 1024 * 1024;
+    private static final int THREAD_COUNT = 2;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static DemoPrefetcher instance;
+
+    private final Context context;
+    private final ThreadPoolExecutor executor;
+    private final AtomicInteger sequence = new AtomicInteger();
+    // guarded by this
+    private final Map<String, Task> tasks = new HashMap<>();
+
+    public static synchronized DemoPrefetcher getInstance(Context context) {
+        if (instance == null) {
+            instance = new DemoPrefetcher(context.getApplicationContext());
+            DemoUtil.initializeAsync(context);
+        }
+        return instance;
+    }
+
+    private DemoPrefetcher(Context context) {
+        this.context = context;
+        executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, TAG);
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /** Prefetches the first {@link #DEFAULT_PREFETCH_BYTES} bytes of each URI, in list order. */
+    public void prefetch(Iterable<Uri> uris) {
+        for (Uri uri : uris) {
+            prefetch(uri, DEFAULT_PREFETCH_BYTES, PRIORITY_NORMAL);
+        }
+    }
+
+    /**
+     * Prefetches roughly the first {@code durationMs} of a progressive stream, estimating its
+     * size from {@code bitrate} in bits per second.
+     */
+    public void prefetchDuration(Uri uri, long durationMs, long bitrate, int priority) {
+        prefetch(uri, durationMs * bitrate / 8000, priority);
+    }
+
+    public synchronized void prefetch(Uri uri, long bytes, int priority) {
+        String key = uri.toString();
+        Task task = tasks.get(key);
+        if (task != null && !task.started) {
+            executor.remove(task);
+            tasks.remove(key);
+            bytes = Math.max(bytes, task.bytes);
+        } else if (task != null) {
+            // already downloading; cached data is reused by a later request anyway
+            return;
+        }
+
+        task = new Task(uri, bytes, priority, sequence.getAndIncrement());
+        tasks.put(key, task);
+        executor.execute(task);
+    }
+
+    public synchronized void cancel(Uri uri) {
+        Task task = tasks.remove(uri.toString());
+        if (task != null) {
+            task.cancel();
+            executor.remove(task);
+        }
+    }
+
+    public synchronized void cancelAll() {
+        for (Task task : tasks.values()) {
+            task.cancel();
+            executor.remove(task);
+        }
+        tasks.clear();
+    }
+
+    /**
+     * Returns how many of the first {@code bytes} bytes of {@code uri} are in the cache, 0 while
+     * the cache is still being opened.
+     */
+    public long getCachedBytes(Uri uri, long bytes) {
+        if (!DemoUtil.isInitialized())
+            return 0;
+        Cache cache = DemoUtil.getCacheDataSourceFactory(context).getCache();
+        return cache != null ? cache.getCachedBytes(uri.toString(), 0, bytes) : 0;
+    }
+
+    private synchronized void onTaskFinished(Task task) {
+        String key = task.uri.toString();
+        if (tasks.get(key) == task) {
+            tasks.remove(key);
+        }
+    }
+
+    private final class Task implements Runnable, Comparable<Task> {
+        final Uri uri;
+        final long bytes;
+        final int priority;
+        final int order;
+        // guarded by DemoPrefetcher.this
+        boolean started;
+        boolean cancelled;
+        CacheWriter writer;
+
+        Task(Uri uri, long bytes, int priority, int order) {
+            this.uri = uri;
+            this.bytes = bytes;
+            this.priority = priority;
+            this.order = order;
+        }
+
+        @Override
+        public void run() {
+            synchronized (DemoPrefetcher.this) {
+                if (cancelled)
+                    return;
+                started = true;
+            }
+
+            try {
+                // opens the cache on this worker if initializeAsync has not finished yet
+                CacheDataSource.Factory cacheDataSourceFactory = DemoUtil.getCacheDataSourceFactory(context);
+                CacheWriter cacheWriter;
+                synchronized (DemoPrefetcher.this) {
+                    if (cancelled)
+                        return;
+                    DataSpec dataSpec = new DataSpec.Builder()
+                            .setUri(uri)
+                            .setLength(bytes)
+                            .build();
+                    cacheWriter = new CacheWriter(cacheDataSourceFactory.createDataSourceForDownloading(),
+                            dataSpec, /* allowShortContent= */ true, /* temporaryBuffer= */ null,
+                            /* progressListener= */ null);
+                    writer = cacheWriter;
+                }
+                cacheWriter.cache();
+            } catch (InterruptedIOException e) {
+                // cancelled
+            } catch (IOException e) {
+                Log.w(TAG, "prefetch failed: " + uri, e);
+            } finally {
+                onTaskFinished(this);
+            }
+        }
+
+        // must hold DemoPrefetcher.this
+        void cancel() {
+            cancelled = true;
+            if (writer != null) {
+                writer.cancel();
+            }
+        }
+
+        @Override
+        public int compareTo(@NonNull Task other) {
+            if (priority != other.priority) {
+                return priority > other.priority ? -1 : 1;
+            }
+            return Integer.compare(order, other.order);
+        }
+    }
+}
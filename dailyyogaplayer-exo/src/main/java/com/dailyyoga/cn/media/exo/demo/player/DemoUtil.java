@@ -17,13 +17,21 @@ package com.dailyyoga.cn.media.exo.demo.player;
 
 import android.content.Context;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
+
 import com.google.android.exoplayer2.DefaultRenderersFactory;
 import com.google.android.exoplayer2.MediaItem;
 import com.google.android.exoplayer2.RenderersFactory;
 import com.google.android.exoplayer2.database.DatabaseProvider;
 import com.google.android.exoplayer2.database.ExoDatabaseProvider;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.mp4.FragmentedMp4Extractor;
+import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
 import com.google.android.exoplayer2.upstream.DataSink;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
@@ -32,7 +40,7 @@ import com.google.android.exoplayer2.upstream.HttpDataSource;
 import com.google.android.exoplayer2.upstream.cache.Cache;
 import com.google.android.exoplayer2.upstream.cache.CacheDataSink;
 import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
-import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
 import com.google.android.exoplayer2.upstream.cache.SimpleCache;
 import com.google.android.exoplayer2.util.Util;
 
@@ -40,19 +48,36 @@ import java.io.File;
 import java.net.CookieHandler;
 import java.net.CookieManager;
 import java.net.CookiePolicy;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /** Utility methods for the demo app. */
 public final class DemoUtil {
 
     private static final String TAG = DemoUtil.class.getSimpleName();
     private static final String DOWNLOAD_CONTENT_DIRECTORY = "downloads";
+    /** Share of the free space on the download volume the cache may use by default. */
+    private static final int DEFAULT_CACHE_FREE_SPACE_PERCENT = 10;
+    private static final long MIN_DEFAULT_CACHE_BYTES = 64L * 1024 * 1024;
+    private static final long MAX_DEFAULT_CACHE_BYTES = 1024L * 1024 * 1024;
 
+    private static CacheDataSource.Factory cacheDataSourceFactory;
     private static DataSource.Factory dataSourceFactory;
+    private static DataSource.Factory upstreamDataSourceFactory;
     private static HttpDataSource.Factory httpDataSourceFactory;
     private static DatabaseProvider databaseProvider;
     private static File downloadDirectory;
-    private static Cache downloadCache;
+    private static volatile Cache downloadCache;
+    private static volatile long maxCacheBytes;
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // guarded by pendingInitCallbacks
+    private static final List<Runnable> pendingInitCallbacks = new ArrayList<>();
+    private static ExecutorService initExecutor;
+    private static volatile boolean initialized;
 
     public static String getUserAgent(Context context) {
         return Util.getUserAgent(context, "DailyyogaExoMediaPlayer");
@@ -65,6 +90,14 @@ public final class DemoUtil {
 
     public static RenderersFactory buildRenderersFactory(
             Context context, boolean preferExtensionRenderer) {
+        return buildRenderersFactory(context, preferExtensionRenderer, false);
+    }
+
+    /**
+     * @param lean build only video and audio renderers, see {@link LeanRenderersFactory}
+     */
+    public static RenderersFactory buildRenderersFactory(
+            Context context, boolean preferExtensionRenderer, boolean lean) {
         @DefaultRenderersFactory.ExtensionRendererMode
         int extensionRendererMode =
                 useExtensionRenderers()
@@ -72,8 +105,19 @@ public final class DemoUtil {
                         ? DefaultRenderersFactory.EXTENSION_RENDERER_MODE_PREFER
                         : DefaultRenderersFactory.EXTENSION_RENDERER_MODE_ON)
                         : DefaultRenderersFactory.EXTENSION_RENDERER_MODE_OFF;
-        return new DefaultRenderersFactory(context.getApplicationContext())
-                .setExtensionRendererMode(extensionRendererMode);
+        DefaultRenderersFactory renderersFactory = lean
+                ? new LeanRenderersFactory(context.getApplicationContext())
+                : new DefaultRenderersFactory(context.getApplicationContext());
+        return renderersFactory.setExtensionRendererMode(extensionRendererMode);
+    }
+
+    /**
+     * Returns an {@link ExtractorsFactory} for the progressive containers we ship (MP4 and
+     * fragmented MP4) instead of sniffing every container ExoPlayer supports. HLS segments are
+     * handled by the HLS extractor factory and are not affected.
+     */
+    public static ExtractorsFactory buildLeanExtractorsFactory() {
+        return () -> new Extractor[]{new Mp4Extractor(), new FragmentedMp4Extractor()};
     }
 
     public static synchronized HttpDataSource.Factory getHttpDataSourceFactory(Context context) {
@@ -86,13 +130,95 @@ public final class DemoUtil {
         return httpDataSourceFactory;
     }
 
-    /** Returns a {@link DataSource.Factory}. */
+    /**
+     * Opens the database and the disk cache and loads the saved bandwidth estimates on a
+     * background thread, so the first prepare does not touch the disk on the main thread. Call it early, e.g. from
+     * {@code Application.onCreate}.
+     */
+    public static void initializeAsync(Context context) {
+        runWhenInitialized(context, null);
+    }
+
+    public static boolean isInitialized() {
+        return initialized;
+    }
+
+    /**
+     * Runs {@code callback} on the main thread once {@link #getCacheDataSourceFactory(Context)}
+     * is ready, starting the initialization if needed. Runs it right away when already ready.
+     */
+    public static void runWhenInitialized(Context context, @Nullable Runnable callback) {
+        if (initialized) {
+            if (callback != null) {
+                callback.run();
+            }
+            return;
+        }
+
+        final Context appContext = context.getApplicationContext();
+        synchronized (pendingInitCallbacks) {
+            if (!initialized) {
+                if (callback != null) {
+                    pendingInitCallbacks.add(callback);
+                }
+                if (initExecutor == null) {
+                    initExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, TAG + "-init");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    initExecutor.execute(() -> initialize(appContext));
+                }
+                return;
+            }
+        }
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+    private static void initialize(Context context) {
+        long start = System.currentTimeMillis();
+        try {
+            getCacheDataSourceFactory(context);
+        } catch (RuntimeException e) {
+            // the first player will hit the same error synchronously and report it
+            Log.w(TAG, "initialize failed", e);
+        }
+        SharedBandwidthMeter.warmUp(context);
+        Log.i(TAG, "initialized in " + (System.currentTimeMillis() - start) + "ms");
+
+        final List<Runnable> callbacks;
+        synchronized (pendingInitCallbacks) {
+            initialized = true;
+            callbacks = new ArrayList<>(pendingInitCallbacks);
+            pendingInitCallbacks.clear();
+        }
+        mainHandler.post(() -> {
+            for (Runnable callback : callbacks) {
+                callback.run();
+            }
+        });
+    }
+
+    /**
+     * Returns the {@link DataSource.Factory} players read through: http(s) goes through the
+     * cache of {@link #getCacheDataSourceFactory(Context)}, local schemes such as file, content
+     * and asset are read directly and never written to the cache.
+     */
     public static synchronized DataSource.Factory getDataSourceFactory(Context context) {
         if (dataSourceFactory == null) {
             context = context.getApplicationContext();
-            DefaultDataSourceFactory upstreamFactory =
-                    new DefaultDataSourceFactory(context, getHttpDataSourceFactory(context));
+            dataSourceFactory = new NetworkCacheDataSource.Factory(
+                    getCacheDataSourceFactory(context), getUpstreamDataSourceFactory(context));
+        }
+        return dataSourceFactory;
+    }
 
+    /** Returns the {@link CacheDataSource.Factory} for http(s) media, e.g. to warm its cache. */
+    public static synchronized CacheDataSource.Factory getCacheDataSourceFactory(Context context) {
+        if (cacheDataSourceFactory == null) {
+            context = context.getApplicationContext();
             Cache cache = getDownloadCache(context);
 
             // CacheDataSinkFactory 第二个参数为单个缓存文件大小，如果需要缓存的文件大小超过此限制，则会分片缓存，不影响播放
@@ -100,22 +226,57 @@ public final class DemoUtil {
                     .setCache(cache)
                     .setFragmentSize(CacheDataSink.DEFAULT_FRAGMENT_SIZE);
 
-            dataSourceFactory = buildCacheDataSource(upstreamFactory, null, cache);
+            cacheDataSourceFactory = buildCacheDataSource(
+                    getUpstreamDataSourceFactory(context), cacheWriteDataSinkFactory, cache);
         }
-        return dataSourceFactory;
+        return cacheDataSourceFactory;
+    }
+
+    private static synchronized DataSource.Factory getUpstreamDataSourceFactory(Context context) {
+        if (upstreamDataSourceFactory == null) {
+            upstreamDataSourceFactory =
+                    new DefaultDataSourceFactory(context, getHttpDataSourceFactory(context));
+        }
+        return upstreamDataSourceFactory;
     }
 
     private static synchronized Cache getDownloadCache(Context context) {
         if (downloadCache == null) {
             File downloadContentDirectory =
                     new File(getDownloadDirectory(context), DOWNLOAD_CONTENT_DIRECTORY);
+            long cacheBytes = getMaxCacheBytes(context);
+            Log.i(TAG, "cache budget " + cacheBytes + " bytes in " + downloadContentDirectory);
             downloadCache =
                     new SimpleCache(
-                            downloadContentDirectory, new NoOpCacheEvictor(), getDatabaseProvider(context));
+                            downloadContentDirectory,
+                            new LeastRecentlyUsedCacheEvictor(cacheBytes),
+                            getDatabaseProvider(context));
         }
         return downloadCache;
     }
 
+    /**
+     * Sets the byte budget of the disk cache, 0 derives it from the free space of the download
+     * volume. The cache is opened once per process, so this only takes effect before the first
+     * player is prepared or {@link #initializeAsync(Context)} runs. Never blocks on the cache.
+     */
+    public static void setMaxCacheBytes(long bytes) {
+        if (downloadCache != null && bytes != maxCacheBytes) {
+            Log.w(TAG, "cache already opened, ignoring budget " + bytes);
+            return;
+        }
+        maxCacheBytes = bytes;
+    }
+
+    public static synchronized long getMaxCacheBytes(Context context) {
+        if (maxCacheBytes > 0)
+            return maxCacheBytes;
+
+        long usable = getDownloadDirectory(context.getApplicationContext()).getUsableSpace();
+        long bytes = usable / 100 * DEFAULT_CACHE_FREE_SPACE_PERCENT;
+        return Math.max(MIN_DEFAULT_CACHE_BYTES, Math.min(MAX_DEFAULT_CACHE_BYTES, bytes));
+    }
+
     private static synchronized DatabaseProvider getDatabaseProvider(Context context) {
         if (databaseProvider == null) {
             databaseProvider = new ExoDatabaseProvider(context);
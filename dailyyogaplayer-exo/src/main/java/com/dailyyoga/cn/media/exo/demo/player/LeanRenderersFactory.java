@@ -0,0 +1,41 @@
+package com.dailyyoga.cn.media.exo.demo.player;
+
+import android.content.Context;
+import android.os.Looper;
+
+import com.google.android.exoplayer2.DefaultRenderersFactory;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.metadata.MetadataOutput;
+import com.google.android.exoplayer2.text.TextOutput;
+
+import java.util.ArrayList;
+
+/**
+ * {@link DefaultRenderersFactory} building only the video and audio renderers. Our lessons carry
+ * no subtitles, timed metadata or 360 video, so the text, metadata and camera motion renderers
+ * would only sit on the playback thread inspecting formats.
+ */
+public class LeanRenderersFactory extends DefaultRenderersFactory {
+
+    public LeanRenderersFactory(Context context) {
+        super(context);
+    }
+
+    @Override
+    protected void buildTextRenderers(Context context, TextOutput output, Looper outputLooper,
+                                      @ExtensionRendererMode int extensionRendererMode,
+                                      ArrayList<Renderer> out) {
+    }
+
+    @Override
+    protected void buildMetadataRenderers(Context context, MetadataOutput output, Looper outputLooper,
+                                          @ExtensionRendererMode int extensionRendererMode,
+                                          ArrayList<Renderer> out) {
+    }
+
+    @Override
+    protected void buildCameraMotionRenderers(Context context,
+                                              @ExtensionRendererMode int extensionRendererMode,
+                                              ArrayList<Renderer> out) {
+    }
+}
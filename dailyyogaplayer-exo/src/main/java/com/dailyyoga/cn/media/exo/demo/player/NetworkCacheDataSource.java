@@ -0,0 +1,125 @@
+package com.dailyyoga.cn.media.exo.demo.player;
+
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.Assertions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link DataSource} reading http(s) through the disk cache and every other scheme (file,
+ * content, asset, ...) straight from upstream, so local media is never copied into the cache.
+ */
+final class NetworkCacheDataSource implements DataSource {
+
+    /** Builds a {@link NetworkCacheDataSource} per player from the two factories. */
+    static final class Factory implements DataSource.Factory {
+
+        private final DataSource.Factory cacheFactory;
+        private final DataSource.Factory upstreamFactory;
+
+        Factory(DataSource.Factory cacheFactory, DataSource.Factory upstreamFactory) {
+            this.cacheFactory = cacheFactory;
+            this.upstreamFactory = upstreamFactory;
+        }
+
+        @Override
+        public DataSource createDataSource() {
+            return new NetworkCacheDataSource(cacheFactory, upstreamFactory);
+        }
+    }
+
+    private final DataSource.Factory cacheFactory;
+    private final DataSource.Factory upstreamFactory;
+    private final List<TransferListener> transferListeners = new ArrayList<>();
+
+    @Nullable private DataSource cacheDataSource;
+    @Nullable private DataSource upstreamDataSource;
+    @Nullable private DataSource dataSource;
+
+    private NetworkCacheDataSource(DataSource.Factory cacheFactory, DataSource.Factory upstreamFactory) {
+        this.cacheFactory = cacheFactory;
+        this.upstreamFactory = upstreamFactory;
+    }
+
+    static boolean isNetworkUri(Uri uri) {
+        String scheme = uri.getScheme();
+        return "http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme);
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+        transferListeners.add(transferListener);
+        if (cacheDataSource != null) {
+            cacheDataSource.addTransferListener(transferListener);
+        }
+        if (upstreamDataSource != null) {
+            upstreamDataSource.addTransferListener(transferListener);
+        }
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        Assertions.checkState(dataSource == null);
+        dataSource = isNetworkUri(dataSpec.uri) ? getCacheDataSource() : getUpstreamDataSource();
+        return dataSource.open(dataSpec);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        return Assertions.checkNotNull(dataSource).read(buffer, offset, readLength);
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+        return dataSource == null ? null : dataSource.getUri();
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        return dataSource == null ? Collections.emptyMap() : dataSource.getResponseHeaders();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (dataSource != null) {
+            try {
+                dataSource.close();
+            } finally {
+                dataSource = null;
+            }
+        }
+    }
+
+    private DataSource getCacheDataSource() {
+        if (cacheDataSource == null) {
+            cacheDataSource = createDataSource(cacheFactory);
+        }
+        return cacheDataSource;
+    }
+
+    private DataSource getUpstreamDataSource() {
+        if (upstreamDataSource == null) {
+            upstreamDataSource = createDataSource(upstreamFactory);
+        }
+        return upstreamDataSource;
+    }
+
+    private DataSource createDataSource(DataSource.Factory factory) {
+        DataSource source = factory.createDataSource();
+        for (TransferListener listener : transferListeners) {
+            source.addTransferListener(listener);
+        }
+        return source;
+    }
+}
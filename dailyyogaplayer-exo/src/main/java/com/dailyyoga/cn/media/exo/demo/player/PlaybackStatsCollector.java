@@ -0,0 +1,136 @@
+package com.dailyyoga.cn.media.exo.demo.player;
+
+import android.os.SystemClock;
+import android.view.Surface;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.source.MediaLoadData;
+
+/**
+ * Opt-in {@link AnalyticsListener} aggregating the quality of experience of a playback session:
+ * startup latency, rebuffers, dropped frames, video bitrate switches and bandwidth samples.
+ * <p>
+ * Events only update primitive counters, nothing is allocated or logged per event. Called on the
+ * player's application thread, which {@link #getSummary()} must be called on too.
+ */
+public final class PlaybackStatsCollector implements AnalyticsListener {
+
+    private long sessionStartMs;
+    private long startupLatencyMs;
+    private boolean started;
+    private boolean seeking;
+    private long rebufferStartMs;
+    private int rebufferCount;
+    private long rebufferDurationMs;
+    private int droppedFrames;
+    private int videoBitrate;
+    private int bitrateSwitches;
+    private int bandwidthSamples;
+    private long bandwidthBytes;
+    private long bandwidthTimeMs;
+    private long bandwidthEstimate;
+
+    public PlaybackStatsCollector() {
+        reset();
+    }
+
+    /** Starts a new session, timing the startup latency from now. */
+    public void reset() {
+        sessionStartMs = SystemClock.elapsedRealtime();
+        startupLatencyMs = C.TIME_UNSET;
+        started = false;
+        seeking = false;
+        rebufferStartMs = C.TIME_UNSET;
+        rebufferCount = 0;
+        rebufferDurationMs = 0;
+        droppedFrames = 0;
+        videoBitrate = Format.NO_VALUE;
+        bitrateSwitches = 0;
+        bandwidthSamples = 0;
+        bandwidthBytes = 0;
+        bandwidthTimeMs = 0;
+        bandwidthEstimate = 0;
+    }
+
+    public PlaybackSummary getSummary() {
+        long rebufferDuration = rebufferDurationMs;
+        if (rebufferStartMs != C.TIME_UNSET)
+            rebufferDuration += SystemClock.elapsedRealtime() - rebufferStartMs;
+        long meanBandwidth = bandwidthTimeMs > 0 ? bandwidthBytes * 8000 / bandwidthTimeMs : 0;
+        return new PlaybackSummary(startupLatencyMs, rebufferCount, rebufferDuration,
+                droppedFrames, bitrateSwitches, videoBitrate,
+                bandwidthSamples, meanBandwidth, bandwidthEstimate);
+    }
+
+    @Override
+    public void onRenderedFirstFrame(EventTime eventTime, @Nullable Surface surface) {
+        if (startupLatencyMs == C.TIME_UNSET)
+            startupLatencyMs = eventTime.realtimeMs - sessionStartMs;
+    }
+
+    @Override
+    public void onSeekStarted(EventTime eventTime) {
+        seeking = true;
+        endRebuffer(eventTime.realtimeMs);
+    }
+
+    @Override
+    public void onPlaybackStateChanged(EventTime eventTime, int state) {
+        switch (state) {
+            case Player.STATE_READY:
+                started = true;
+                seeking = false;
+                endRebuffer(eventTime.realtimeMs);
+                break;
+            case Player.STATE_BUFFERING:
+                if (started && !seeking && rebufferStartMs == C.TIME_UNSET) {
+                    rebufferCount++;
+                    rebufferStartMs = eventTime.realtimeMs;
+                }
+                break;
+            case Player.STATE_ENDED:
+            case Player.STATE_IDLE:
+                endRebuffer(eventTime.realtimeMs);
+                break;
+        }
+    }
+
+    @Override
+    public void onDroppedVideoFrames(EventTime eventTime, int droppedFrames, long elapsedMs) {
+        this.droppedFrames += droppedFrames;
+    }
+
+    @Override
+    public void onDownstreamFormatChanged(EventTime eventTime, MediaLoadData mediaLoadData) {
+        if (mediaLoadData.trackType != C.TRACK_TYPE_VIDEO && mediaLoadData.trackType != C.TRACK_TYPE_DEFAULT)
+            return;
+        Format format = mediaLoadData.trackFormat;
+        if (format == null || format.bitrate == Format.NO_VALUE || format.bitrate == videoBitrate)
+            return;
+
+        if (videoBitrate != Format.NO_VALUE)
+            bitrateSwitches++;
+        videoBitrate = format.bitrate;
+    }
+
+    @Override
+    public void onBandwidthEstimate(EventTime eventTime, int totalLoadTimeMs, long totalBytesLoaded,
+                                    long bitrateEstimate) {
+        bandwidthSamples++;
+        bandwidthTimeMs += totalLoadTimeMs;
+        bandwidthBytes += totalBytesLoaded;
+        bandwidthEstimate = bitrateEstimate;
+    }
+
+    private void endRebuffer(long nowMs) {
+        if (rebufferStartMs != C.TIME_UNSET) {
+            rebufferDurationMs += nowMs - rebufferStartMs;
+            rebufferStartMs = C.TIME_UNSET;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.dailyyoga.cn.media.exo.demo.player;
+
+import com.google.android.exoplayer2.C;
+
+/**
+ * Quality of experience of one playback session, as aggregated by
+ * {@link PlaybackStatsCollector}.
+ */
+public final class PlaybackSummary {
+
+    /** From prepare to the first rendered frame, or {@link C#TIME_UNSET} if none was rendered. */
+    public final long startupLatencyMs;
+    /** Stalls after playback started, not counting seeks. */
+    public final int rebufferCount;
+    public final long rebufferDurationMs;
+    public final int droppedFrames;
+    /** Changes of the video bitrate after the first selected format. */
+    public final int bitrateSwitches;
+    /** Bitrate of the video format currently loaded, or {@link com.google.android.exoplayer2.Format#NO_VALUE}. */
+    public final int videoBitrate;
+    public final int bandwidthSamples;
+    /** Mean of the bandwidth samples in bits per second, 0 without samples. */
+    public final long meanBandwidth;
+    /** Latest bandwidth estimate in bits per second, 0 without samples. */
+    public final long bandwidthEstimate;
+
+    PlaybackSummary(long startupLatencyMs, int rebufferCount, long rebufferDurationMs,
+                    int droppedFrames, int bitrateSwitches, int videoBitrate,
+                    int bandwidthSamples, long meanBandwidth, long bandwidthEstimate) {
+        this.startupLatencyMs = startupLatencyMs;
+        this.rebufferCount = rebufferCount;
+        this.rebufferDurationMs = rebufferDurationMs;
+        this.droppedFrames = droppedFrames;
+        this.bitrateSwitches = bitrateSwitches;
+        this.videoBitrate = videoBitrate;
+        this.bandwidthSamples = bandwidthSamples;
+        this.meanBandwidth = meanBandwidth;
+        this.bandwidthEstimate = bandwidthEstimate;
+    }
+
+    @Override
+    public String toString() {
+        return "PlaybackSummary{startupLatencyMs=" + startupLatencyMs
+                + ", rebufferCount=" + rebufferCount
+                + ", rebufferDurationMs=" + rebufferDurationMs
+                + ", droppedFrames=" + droppedFrames
+                + ", bitrateSwitches=" + bitrateSwitches
+                + ", videoBitrate=" + videoBitrate
+                + ", bandwidthSamples=" + bandwidthSamples
+                + ", meanBandwidth=" + meanBandwidth
+                + ", bandwidthEstimate=" + bandwidthEstimate
+                + '}';
+    }
+}
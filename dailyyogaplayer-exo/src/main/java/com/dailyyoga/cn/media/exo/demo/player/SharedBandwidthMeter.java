@@ -0,0 +1,168 @@
+package com.dailyyoga.cn.media.exo.demo.player;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.telephony.TelephonyManager;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+
+/**
+ * Process-wide {@link DefaultBandwidthMeter} shared by every {@link DemoPlayer}, with its
+ * estimate persisted per network type.
+ * <p>
+ * On start the meter is seeded with the last estimate saved for each network type, so the first
+ * track selection of a new player matches the connection instead of ExoPlayer's conservative
+ * country defaults. Estimates are saved at most every {@link #SAVE_INTERVAL_MS}.
+ * <p>
+ * Reading the saved estimates loads a preferences file, so {@link #warmUp(Context)} runs from
+ * {@link DemoUtil}'s background initialization. Until it has run, {@link #get(Context)} returns
+ * an unseeded meter instead of reading the file on the calling thread.
+ */
+public final class SharedBandwidthMeter {
+
+    private static final String PREFERENCES_NAME = "dailyyoga_exo_bandwidth";
+    private static final String KEY_PREFIX = "bitrate_";
+    private static final long SAVE_INTERVAL_MS = 10 * 1000;
+    private static final int[] NETWORK_TYPES = {
+            C.NETWORK_TYPE_WIFI,
+            C.NETWORK_TYPE_ETHERNET,
+            C.NETWORK_TYPE_2G,
+            C.NETWORK_TYPE_3G,
+            C.NETWORK_TYPE_4G,
+            C.NETWORK_TYPE_5G,
+    };
+    // TelephonyManager.NETWORK_TYPE_NR, API 29
+    private static final int TELEPHONY_NETWORK_TYPE_NR = 20;
+
+    private static DefaultBandwidthMeter bandwidthMeter;
+    // used until warmUp has seeded bandwidthMeter
+    private static DefaultBandwidthMeter unseededBandwidthMeter;
+    private static SharedPreferences preferences;
+    private static long lastSaveTimeMs;
+
+    /**
+     * Returns the seeded meter once {@link #warmUp(Context)} has run, an unseeded one before.
+     * Never reads the saved estimates itself.
+     */
+    public static synchronized DefaultBandwidthMeter get(Context context) {
+        if (bandwidthMeter != null) {
+            return bandwidthMeter;
+        }
+        if (unseededBandwidthMeter == null) {
+            unseededBandwidthMeter = build(context.getApplicationContext(), null);
+        }
+        return unseededBandwidthMeter;
+    }
+
+    /** Loads the saved estimates and builds the seeded meter; call off the main thread. */
+    static void warmUp(Context context) {
+        synchronized (SharedBandwidthMeter.class) {
+            if (bandwidthMeter != null) {
+                return;
+            }
+        }
+
+        // loading the preferences file is the slow part, keep it out of the lock get() takes
+        Context appContext = context.getApplicationContext();
+        SharedPreferences loaded = appContext.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        loaded.getAll();
+        synchronized (SharedBandwidthMeter.class) {
+            if (bandwidthMeter == null) {
+                preferences = loaded;
+                bandwidthMeter = build(appContext, loaded);
+            }
+        }
+    }
+
+    private static DefaultBandwidthMeter build(final Context appContext, SharedPreferences seed) {
+        DefaultBandwidthMeter.Builder builder = new DefaultBandwidthMeter.Builder(appContext)
+                .setResetOnNetworkTypeChange(true);
+        if (seed != null) {
+            for (int networkType : NETWORK_TYPES) {
+                long bitrate = seed.getLong(KEY_PREFIX + networkType, 0);
+                if (bitrate > 0) {
+                    builder.setInitialBitrateEstimate(networkType, bitrate);
+                }
+            }
+        }
+        DefaultBandwidthMeter meter = builder.build();
+        meter.addEventListener(new Handler(Looper.getMainLooper()),
+                new BandwidthMeter.EventListener() {
+                    @Override
+                    public void onBandwidthSample(int elapsedMs, long bytesTransferred, long bitrateEstimate) {
+                        maybeSave(appContext, bitrateEstimate);
+                    }
+                });
+        return meter;
+    }
+
+    private static synchronized void maybeSave(Context context, long bitrateEstimate) {
+        long now = SystemClock.elapsedRealtime();
+        // nothing is saved before warmUp has loaded the preferences
+        if (preferences == null || bitrateEstimate <= 0 || now - lastSaveTimeMs < SAVE_INTERVAL_MS) {
+            return;
+        }
+
+        int networkType = getNetworkType(context);
+        if (networkType == C.NETWORK_TYPE_UNKNOWN || networkType == C.NETWORK_TYPE_OFFLINE
+                || networkType == C.NETWORK_TYPE_OTHER) {
+            return;
+        }
+        lastSaveTimeMs = now;
+        preferences.edit().putLong(KEY_PREFIX + networkType, bitrateEstimate).apply();
+    }
+
+    @C.NetworkType
+    private static int getNetworkType(Context context) {
+        NetworkInfo networkInfo;
+        try {
+            ConnectivityManager connectivityManager =
+                    (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+            networkInfo = connectivityManager != null ? connectivityManager.getActiveNetworkInfo() : null;
+        } catch (SecurityException e) {
+            // ACCESS_NETWORK_STATE not granted
+            return C.NETWORK_TYPE_UNKNOWN;
+        }
+        if (networkInfo == null || !networkInfo.isConnected()) {
+            return C.NETWORK_TYPE_OFFLINE;
+        }
+
+        switch (networkInfo.getType()) {
+            case ConnectivityManager.TYPE_WIFI:
+                return C.NETWORK_TYPE_WIFI;
+            case ConnectivityManager.TYPE_ETHERNET:
+                return C.NETWORK_TYPE_ETHERNET;
+            case ConnectivityManager.TYPE_MOBILE:
+                return getMobileNetworkType(networkInfo.getSubtype());
+            default:
+                return C.NETWORK_TYPE_OTHER;
+        }
+    }
+
+    @C.NetworkType
+    private static int getMobileNetworkType(int subtype) {
+        switch (subtype) {
+            case TelephonyManager.NETWORK_TYPE_GPRS:
+            case TelephonyManager.NETWORK_TYPE_EDGE:
+            case TelephonyManager.NETWORK_TYPE_CDMA:
+            case TelephonyManager.NETWORK_TYPE_1xRTT:
+            case TelephonyManager.NETWORK_TYPE_IDEN:
+                return C.NETWORK_TYPE_2G;
+            case TelephonyManager.NETWORK_TYPE_LTE:
+                return C.NETWORK_TYPE_4G;
+            case TELEPHONY_NETWORK_TYPE_NR:
+                return C.NETWORK_TYPE_5G;
+            default:
+                return C.NETWORK_TYPE_3G;
+        }
+    }
+
+    private SharedBandwidthMeter() {}
+}
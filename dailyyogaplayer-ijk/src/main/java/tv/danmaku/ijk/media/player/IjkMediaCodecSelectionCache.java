@@ -0,0 +1,136 @@
+package tv.danmaku.ijk.media.player;
+
+import android.os.Build;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Decoder picked by {@link IjkMediaPlayer.DefaultMediaCodecSelector} per (mime, profile, level),
+ * kept in memory and, once a directory is set, in a small text file so later processes skip the
+ * MediaCodecList scan too.
+ * <p>
+ * The file starts with {@link Build#FINGERPRINT}; a file written by another OS build is discarded,
+ * since an OS update can add, remove or re-rank decoders.
+ */
+final class IjkMediaCodecSelectionCache {
+    private static final String TAG = "IjkMediaCodecSelectionCache";
+    private static final String FILE_NAME = "ijk_codec_selection";
+    // stands for "no acceptable codec", which is worth caching as well
+    private static final String NO_CODEC = "";
+
+    private final Map<String, String> mSelections = new HashMap<String, String>();
+    private File mFile;
+    private boolean mLoaded;
+
+    synchronized void setDirectory(File dir) {
+        File file = dir != null ? new File(dir, FILE_NAME) : null;
+        if (file == null ? mFile == null : file.equals(mFile))
+            return;
+        mFile = file;
+        mLoaded = false;
+    }
+
+    /**
+     * @return true if a selection is cached, stored in {@code out[0]} and null for no codec
+     */
+    synchronized boolean get(String mimeType, int profile, int level, String[] out) {
+        load();
+        String name = mSelections.get(key(mimeType, profile, level));
+        if (name == null)
+            return false;
+        out[0] = NO_CODEC.equals(name) ? null : name;
+        return true;
+    }
+
+    synchronized void put(String mimeType, int profile, int level, String codecName) {
+        load();
+        String name = codecName != null ? codecName : NO_CODEC;
+        String key = key(mimeType, profile, level);
+        if (name.equals(mSelections.put(key, name)))
+            return;
+        save();
+    }
+
+    private static String key(String mimeType, int profile, int level) {
+        return mimeType.toLowerCase(Locale.US) + '|' + profile + '|' + level;
+    }
+
+    private void load() {
+        if (mLoaded)
+            return;
+        mLoaded = true;
+        if (mFile == null || !mFile.exists())
+            return;
+
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(mFile), "UTF-8"));
+            if (!Build.FINGERPRINT.equals(reader.readLine())) {
+                Log.i(TAG, "OS build changed, discarding codec selections");
+                reader.close();
+                reader = null;
+                mFile.delete();
+                return;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf('=');
+                if (separator > 0)
+                    mSelections.put(line.substring(0, separator), line.substring(separator + 1));
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "failed to read codec selections", e);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    private void save() {
+        if (mFile == null)
+            return;
+
+        File tmpFile = new File(mFile.getPath() + ".tmp");
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(tmpFile), "UTF-8");
+            writer.write(Build.FINGERPRINT);
+            writer.write('\n');
+            for (Map.Entry<String, String> entry : mSelections.entrySet()) {
+                writer.write(entry.getKey());
+                writer.write('=');
+                writer.write(entry.getValue());
+                writer.write('\n');
+            }
+            writer.close();
+            writer = null;
+            if (!tmpFile.renameTo(mFile))
+                tmpFile.delete();
+        } catch (IOException e) {
+            Log.w(TAG, "failed to write codec selections", e);
+            tmpFile.delete();
+        } finally {
+            closeQuietly(writer);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null)
+            return;
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -4,7 +4,9 @@ import android.os.Bundle;
 import android.text.TextUtils;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 @SuppressWarnings("SameParameterValue")
 public class IjkMediaMeta {
@@ -130,6 +132,7 @@ public class IjkMediaMeta {
     public static final int FF_PROFILE_H264_CAVLC_444 = 44;
 
     public Bundle mMediaMeta;
+    private final Map<String, Long> mNumbers = new HashMap<String, Long>();
 
     public String mFormat;
     public long mDurationUS;
@@ -149,15 +152,7 @@ public class IjkMediaMeta {
     }
 
     public int getInt(String key, int defaultValue) {
-        String value = getString(key);
-        if (TextUtils.isEmpty(value))
-            return defaultValue;
-
-        try {
-            return Integer.parseInt(value);
-        } catch (NumberFormatException e) {
-            return defaultValue;
-        }
+        return parseInt(mNumbers, mMediaMeta, key, defaultValue);
     }
 
     public long getLong(String key) {
@@ -165,21 +160,45 @@ public class IjkMediaMeta {
     }
 
     public long getLong(String key, long defaultValue) {
-        String value = getString(key);
-        if (TextUtils.isEmpty(value))
-            return defaultValue;
-
-        try {
-            return Long.parseLong(value);
-        } catch (NumberFormatException e) {
-            return defaultValue;
-        }
+        return parseLong(mNumbers, mMediaMeta, key, defaultValue);
     }
 
     public ArrayList<Bundle> getParcelableArrayList(String key) {
         return mMediaMeta.getParcelableArrayList(key);
     }
 
+    // values are parsed on first access only, a meta Bundle never changes once read from native
+    private static int parseInt(Map<String, Long> numbers, Bundle bundle, String key, int defaultValue) {
+        Long number = parseNumber(numbers, bundle, key);
+        if (number == null || number < Integer.MIN_VALUE || number > Integer.MAX_VALUE)
+            return defaultValue;
+        return number.intValue();
+    }
+
+    private static long parseLong(Map<String, Long> numbers, Bundle bundle, String key, long defaultValue) {
+        Long number = parseNumber(numbers, bundle, key);
+        return number != null ? number : defaultValue;
+    }
+
+    private static Long parseNumber(Map<String, Long> numbers, Bundle bundle, String key) {
+        synchronized (numbers) {
+            if (numbers.containsKey(key))
+                return numbers.get(key);
+
+            Long number = null;
+            String value = bundle.getString(key);
+            if (!TextUtils.isEmpty(value)) {
+                try {
+                    number = Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    // cached as missing
+                }
+            }
+            numbers.put(key, number);
+            return number;
+        }
+    }
+
     public String getDurationInline() {
         long duration = mDurationUS + 5000;
         long secs = duration / 1000000;
@@ -264,6 +283,7 @@ public class IjkMediaMeta {
 
     public static class IjkStreamMeta {
         public Bundle mMeta;
+        private final Map<String, Long> mNumbers = new HashMap<String, Long>();
 
         public final int mIndex;
         public String mType;
@@ -302,15 +322,7 @@ public class IjkMediaMeta {
         }
 
         public int getInt(String key, int defaultValue) {
-            String value = getString(key);
-            if (TextUtils.isEmpty(value))
-                return defaultValue;
-
-            try {
-                return Integer.parseInt(value);
-            } catch (NumberFormatException e) {
-                return defaultValue;
-            }
+            return parseInt(mNumbers, mMeta, key, defaultValue);
         }
 
         public long getLong(String key) {
@@ -318,15 +330,7 @@ public class IjkMediaMeta {
         }
 
         public long getLong(String key, long defaultValue) {
-            String value = getString(key);
-            if (TextUtils.isEmpty(value))
-                return defaultValue;
-
-            try {
-                return Long.parseLong(value);
-            } catch (NumberFormatException e) {
-                return defaultValue;
-            }
+            return parseLong(mNumbers, mMeta, key, defaultValue);
         }
 
         public String getCodecLongNameInline() {
@@ -36,6 +36,7 @@ import android.os.Looper;
 import android.os.Message;
 import android.os.ParcelFileDescriptor;
 import android.os.PowerManager;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.text.TextUtils;
 import android.util.Log;
@@ -50,15 +51,29 @@ import tv.danmaku.ijk.media.player.misc.IMediaDataSource;
 import com.dailyyoga.cn.media.misc.ITrackInfo;
 import com.dailyyoga.cn.media.pragma.DebugLog;
 
+import java.io.File;
 import java.io.FileDescriptor;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
 import java.security.InvalidParameterException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Locale;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import tv.danmaku.ijk.media.player.annotations.AccessedByNative;
 import tv.danmaku.ijk.media.player.annotations.CalledByNative;
@@ -70,7 +85,7 @@ import tv.danmaku.ijk.media.player.misc.IjkTrackInfo;
  * <p>
  * Java wrapper of ffplay.
  */
-public final class IjkMediaPlayer extends AbstractMediaPlayer {
+public final class IjkMediaPlayer extends AbstractMediaPlayer implements IjkOptionProfile.OptionSink {
     private final static String TAG = IjkMediaPlayer.class.getName();
 
     private static final int MEDIA_NOP = 0; // interface test message
@@ -174,6 +189,22 @@ public final class IjkMediaPlayer extends AbstractMediaPlayer {
 
     private String mDataSource;
 
+    private volatile IjkTrackInfo[] mTrackInfos;
+    private volatile int mTrackInfoGeneration;
+
+    // resolved from the native thread for the concat demuxer
+    private volatile List<String> mPlaylist;
+    private File mPlaylistFile;
+    // the ffconcat list is written off the main thread, prepareAsync waits for it
+    private FutureTask<Void> mPlaylistFileWrite;
+    private boolean mPrepareWhenPlaylistWritten;
+    private int mPlaylistIndex;
+    private final ArrayDeque<PendingTransition> mPendingTransitions = new ArrayDeque<PendingTransition>();
+    private static final long PLAYLIST_TRANSITION_CHECK_MS = 100;
+
+    private boolean mAudioOnly;
+    private int mDisabledVideoStream = -1;
+
     /**
      * Default library loader
      * Load them by yourself, if your libraries are not installed at default place.
@@ -212,6 +243,87 @@ public final class IjkMediaPlayer extends AbstractMediaPlayer {
         }
     }
 
+    // guarded by sNativeReadyCallbacks
+    private static final List<Runnable> sNativeReadyCallbacks = new ArrayList<Runnable>();
+    private static FutureTask<Void> sWarmUp;
+
+    // writes and deletes the playlist files in order, off the main thread
+    private static ExecutorService sPlaylistFileExecutor;
+    private static final AtomicInteger sPlaylistFileSequence = new AtomicInteger();
+
+    /**
+     * Loads the libraries and runs native_init on a background thread, so the first player
+     * constructed on the main thread does not pay for it. Call it early, e.g. from
+     * {@code Application.onCreate}.
+     *
+     * @param libLoader custom library loader, can be null
+     * @return completes once the native side is ready, or with the load error
+     */
+    public static Future<Void> warmUp(final IjkLibLoader libLoader) {
+        synchronized (sNativeReadyCallbacks) {
+            if (sWarmUp == null) {
+                sWarmUp = new FutureTask<Void>(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        long start = SystemClock.elapsedRealtime();
+                        loadLibrariesOnce(libLoader);
+                        initNativeOnce();
+                        DebugLog.i(TAG, "native ready in " + (SystemClock.elapsedRealtime() - start) + "ms");
+                        return null;
+                    }
+                }) {
+                    @Override
+                    protected void done() {
+                        dispatchNativeReady();
+                    }
+                };
+                Thread thread = new Thread(sWarmUp, "IjkMediaPlayer-warmUp");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            return sWarmUp;
+        }
+    }
+
+    public static boolean isNativeReady() {
+        return mIsLibLoaded && mIsNativeInitialized;
+    }
+
+    /**
+     * Runs {@code callback} on the main thread once {@link #warmUp(IjkLibLoader)} has finished,
+     * starting it with the default loader if needed. Runs it right away when already ready. A
+     * failed warm-up runs it too, the constructor then reports the load error.
+     */
+    public static void runWhenNativeReady(Runnable callback) {
+        if (!isNativeReady()) {
+            synchronized (sNativeReadyCallbacks) {
+                if (!warmUp(null).isDone()) {
+                    sNativeReadyCallbacks.add(callback);
+                    return;
+                }
+            }
+        }
+        callback.run();
+    }
+
+    private static void dispatchNativeReady() {
+        final List<Runnable> callbacks;
+        synchronized (sNativeReadyCallbacks) {
+            callbacks = new ArrayList<Runnable>(sNativeReadyCallbacks);
+            sNativeReadyCallbacks.clear();
+        }
+        if (callbacks.isEmpty())
+            return;
+
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                for (Runnable callback : callbacks)
+                    callback.run();
+            }
+        });
+    }
+
     /**
      * Default constructor. Consider using one of the create() methods for
      * synchronously instantiating a IjkMediaPlayer from a Uri or resource.
@@ -436,6 +548,207 @@ public final class IjkMediaPlayer extends AbstractMediaPlayer {
         setDataSource(path);
     }
 
+    /**
+     * Plays {@code uris} back to back through FFmpeg's concat demuxer: an ffconcat list of
+     * {@code ijksegment:<index>} entries is written to the cache dir and each entry is resolved to
+     * its URL via {@link OnNativeInvokeListener#CTRL_WILL_CONCAT_RESOLVE_SEGMENT} when the demuxer
+     * reaches it. Packets of the next item are read into the same buffer while the current one
+     * plays, so there is no re-prepare between items.
+     * <p>
+     * The list is written on a background thread. {@link #prepareAsync()} called before it is
+     * done starts preparing once it is, and a failed write is reported to
+     * {@link OnErrorListener} as {@link #MEDIA_ERROR_IO}.
+     * <p>
+     * Transitions are reported when the playback position reaches the point the next item was
+     * opened at, estimated from the buffered duration at that moment; see
+     * {@link OnPlaylistTransitionListener} for how far off that can be.
+     */
+    @Override
+    public void setPlaylist(Context context, List<Uri> uris, Map<String, String> headers)
+            throws IOException, IllegalArgumentException, SecurityException, IllegalStateException {
+        if (uris == null || uris.isEmpty())
+            throw new IllegalArgumentException("empty playlist");
+
+        List<String> playlist = new ArrayList<String>(uris.size());
+        for (Uri uri : uris) {
+            playlist.add(ContentResolver.SCHEME_FILE.equals(uri.getScheme()) ? uri.getPath() : uri.toString());
+        }
+
+        deletePlaylistFile();
+        final File file = new File(context.getCacheDir(), "ijk_playlist_" + android.os.Process.myPid()
+                + "_" + sPlaylistFileSequence.incrementAndGet() + ".ffconcat");
+        final int count = playlist.size();
+        final EventHandler handler = mEventHandler;
+        mPlaylistFileWrite = new FutureTask<Void>(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+                try {
+                    writer.write("ffconcat version 1.0\n");
+                    for (int i = 0; i < count; i++) {
+                        writer.write("file 'ijksegment:" + i + "'\n");
+                    }
+                } finally {
+                    writer.close();
+                }
+                return null;
+            }
+        }) {
+            @Override
+            protected void done() {
+                if (handler == null)
+                    return;
+                final FutureTask<Void> write = this;
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPlaylistFileWritten(write);
+                    }
+                });
+            }
+        };
+        getPlaylistFileExecutor().execute(mPlaylistFileWrite);
+
+        mPlaylistFile = file;
+        mPlaylist = playlist;
+        mPlaylistIndex = 0;
+        mPendingTransitions.clear();
+        setDataSource(file.getAbsolutePath(), headers);
+        mDataSource = playlist.get(0);
+        // format options are read on prepare, so these override the ones set with the headers
+        setOption(OPT_CATEGORY_FORMAT, "safe", 0);
+        setOption(OPT_CATEGORY_FORMAT, "protocol_whitelist", "ffconcat,async,cache,crypto,file,http,https,ijkhttphook,ijkinject,ijklivehook,ijklongurl,ijksegment,ijktcphook,pipe,rtp,tcp,tls,udp,ijkurlhook,data");
+    }
+
+    private static synchronized ExecutorService getPlaylistFileExecutor() {
+        if (sPlaylistFileExecutor == null) {
+            sPlaylistFileExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "IjkMediaPlayer-playlist");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sPlaylistFileExecutor;
+    }
+
+    private void onPlaylistFileWritten(FutureTask<Void> write) {
+        if (write != mPlaylistFileWrite || !mPrepareWhenPlaylistWritten)
+            return;
+
+        mPrepareWhenPlaylistWritten = false;
+        try {
+            write.get();
+        } catch (ExecutionException e) {
+            DebugLog.e(TAG, "failed to write " + mPlaylistFile, e.getCause());
+            if (!notifyOnError(MEDIA_ERROR_UNKNOWN, MEDIA_ERROR_IO, e.getCause()))
+                notifyOnCompletion();
+            return;
+        } catch (InterruptedException e) {
+            // done() runs once the task has finished, get() does not wait
+            return;
+        }
+        _prepareAsync();
+    }
+
+    @Override
+    public int getCurrentPlaylistIndex() {
+        return mPlaylistIndex;
+    }
+
+    // native thread
+    private void onPlaylistSegmentOpened(final int index) {
+        EventHandler handler = mEventHandler;
+        if (handler == null)
+            return;
+
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                schedulePlaylistTransition(index);
+            }
+        });
+    }
+
+    private void schedulePlaylistTransition(int index) {
+        if (mPlaylist == null)
+            return;
+
+        // a later open supersedes transitions queued before a seek
+        Iterator<PendingTransition> iterator = mPendingTransitions.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().index >= index)
+                iterator.remove();
+        }
+        // the demuxer opens the next item once the current one is fully read, so it starts
+        // playing when the buffered packets have drained
+        long cachedMs = Math.max(getVideoCachedDuration(), getAudioCachedDuration());
+        mPendingTransitions.addLast(new PendingTransition(index, getCurrentPosition() + cachedMs));
+        mEventHandler.removeCallbacks(mPlaylistTransitionChecker);
+        mEventHandler.post(mPlaylistTransitionChecker);
+    }
+
+    private final Runnable mPlaylistTransitionChecker = new Runnable() {
+        @Override
+        public void run() {
+            List<String> playlist = mPlaylist;
+            if (playlist == null)
+                return;
+
+            long position = getCurrentPosition();
+            PendingTransition transition;
+            while ((transition = mPendingTransitions.peekFirst()) != null && position >= transition.positionMs) {
+                mPendingTransitions.pollFirst();
+                if (transition.index != mPlaylistIndex) {
+                    mPlaylistIndex = transition.index;
+                    mDataSource = playlist.get(transition.index);
+                    invalidateTrackInfo();
+                    notifyOnPlaylistTransition(transition.index);
+                }
+            }
+            if (!mPendingTransitions.isEmpty() && mEventHandler != null)
+                mEventHandler.postDelayed(this, PLAYLIST_TRANSITION_CHECK_MS);
+        }
+    };
+
+    private void clearPlaylist() {
+        if (mEventHandler != null)
+            mEventHandler.removeCallbacks(mPlaylistTransitionChecker);
+        mPendingTransitions.clear();
+        mPlaylist = null;
+        mPlaylistIndex = 0;
+        deletePlaylistFile();
+    }
+
+    private void deletePlaylistFile() {
+        mPlaylistFileWrite = null;
+        mPrepareWhenPlaylistWritten = false;
+        if (mPlaylistFile != null) {
+            // queued after the write, so a file still being written is deleted too
+            final File file = mPlaylistFile;
+            getPlaylistFileExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!file.delete())
+                        DebugLog.w(TAG, "failed to delete " + file);
+                }
+            });
+            mPlaylistFile = null;
+        }
+    }
+
+    private static final class PendingTransition {
+        final int index;
+        final long positionMs;
+
+        PendingTransition(int index, long positionMs) {
+            this.index = index;
+            this.positionMs = positionMs;
+        }
+    }
+
     /**
      * Sets the data source (FileDescriptor) to use. It is the caller's responsibility
      * to close the file descriptor. It is safe to do so as soon as this call returns.
@@ -514,6 +827,11 @@ public final class IjkMediaPlayer extends AbstractMediaPlayer {
 
     @Override
     public void prepareAsync() throws IllegalStateException {
+        FutureTask<Void> write = mPlaylistFileWrite;
+        if (write != null && !write.isDone()) {
+            mPrepareWhenPlaylistWritten = true;
+            return;
+        }
         _prepareAsync();
     }
 
@@ -596,8 +914,31 @@ public final class IjkMediaPlayer extends AbstractMediaPlayer {
         }
     }
 
+    /**
+     * Track info is read over JNI and parsed once, then served from a snapshot until the metadata
+     * is updated, a stream is (de)selected or the player is reset.
+     */
     @Override
     public IjkTrackInfo[] getTrackInfo() {
+        IjkTrackInfo[] trackInfos = mTrackInfos;
+        if (trackInfos == null) {
+            int generation = mTrackInfoGeneration;
+            trackInfos = readTrackInfo();
+            if (trackInfos == null)
+                return null;
+            // don't keep a snapshot invalidated while it was read
+            if (generation == mTrackInfoGeneration)
+                mTrackInfos = trackInfos;
+        }
+        return trackInfos.clone();
+    }
+
+    private void invalidateTrackInfo() {
+        mTrackInfoGeneration++;
+        mTrackInfos = null;
+    }
+
+    private IjkTrackInfo[] readTrackInfo() {
         Bundle bundle = getMediaMeta();
         if (bundle == null)
             return null;
@@ -640,16 +981,51 @@ public final class IjkMediaPlayer extends AbstractMediaPlayer {
     // TODO: @Override
     public void selectTrack(int track) {
         _setStreamSelected(track, true);
+        invalidateTrackInfo();
     }
 
     // experimental, should set DEFAULT_MIN_FRAMES and MAX_MIN_FRAMES to 25
     // TODO: @Override
     public void deselectTrack(int track) {
         _setStreamSelected(track, false);
+        invalidateTrackInfo();
     }
 
     private native void _setStreamSelected(int stream, boolean select);
 
+    /**
+     * Deselects the video stream, which closes its decoder; its packets are still demuxed and
+     * dropped. Reselecting it seeks to the current position so video restarts from a key frame
+     * in sync with the audio. Applied once prepared if set earlier.
+     */
+    @Override
+    public void setAudioOnly(boolean audioOnly) {
+        mAudioOnly = audioOnly;
+        if (audioOnly) {
+            disableVideoStream();
+        } else if (mDisabledVideoStream >= 0) {
+            selectTrack(mDisabledVideoStream);
+            mDisabledVideoStream = -1;
+            seekTo(getCurrentPosition());
+        }
+    }
+
+    @Override
+    public boolean isAudioOnly() {
+        return mAudioOnly;
+    }
+
+    private void disableVideoStream() {
+        if (mDisabledVideoStream >= 0)
+            return;
+
+        int stream = getSelectedTrack(ITrackInfo.MEDIA_TRACK_TYPE_VIDEO);
+        if (stream >= 0) {
+            deselectTrack(stream);
+            mDisabledVideoStream = stream;
+        }
+    }
+
     @Override
     public int getVideoWidth() {
         return mVideoWidth;
@@ -676,6 +1052,16 @@ public final class IjkMediaPlayer extends AbstractMediaPlayer {
     @Override
     public native void seekTo(long msec) throws IllegalStateException;
 
+    /**
+     * The precision is fixed when the player is prepared: seeks land on the key frame before the
+     * position unless the player option {@code enable-accurate-seek} is set, which then makes
+     * every seek exact. {@code mode} is ignored.
+     */
+    @Override
+    public void seekTo(long msec, int mode) throws IllegalStateException {
+        seekTo(msec);
+    }
+
     @Override
     public native long getCurrentPosition();
 
@@ -703,6 +1089,8 @@ public final class IjkMediaPlayer extends AbstractMediaPlayer {
         stayAwake(false);
         updateSurfaceScreenOn();
         resetListeners();
+        clearPlaylist();
+        invalidateTrackInfo();
         _release();
     }
 
@@ -714,6 +1102,9 @@ public final class IjkMediaPlayer extends AbstractMediaPlayer {
         _reset();
         // make sure none of the listeners get called anymore
         mEventHandler.removeCallbacksAndMessages(null);
+        clearPlaylist();
+        mDisabledVideoStream = -1;
+        invalidateTrackInfo();
 
         mVideoWidth = 0;
         mVideoHeight = 0;
@@ -840,6 +1231,32 @@ public final class IjkMediaPlayer extends AbstractMediaPlayer {
         return _getPropertyLong(FFP_PROP_INT64_LATEST_SEEK_LOAD_DURATION, 0);
     }
 
+    /**
+     * Fills {@code out} with every statistic property in one call, reusing its storage. Prefer it
+     * to the individual getters when polling several of them, e.g. for a HUD.
+     * <p>
+     * This does not reduce the JNI crossings: libijkplayer has no batch getter, so each of the
+     * {@link IjkMediaPlayerStats#LONG_STAT_COUNT} + {@link IjkMediaPlayerStats#FLOAT_STAT_COUNT}
+     * properties is still one native call.
+     *
+     * @return {@code out}
+     */
+    public IjkMediaPlayerStats getStats(IjkMediaPlayerStats out) {
+        return out.read(mStatsReader);
+    }
+
+    // libijkplayer has no batch getter: one native call per property, back to back in one pass
+    private final IjkMediaPlayerStats.Reader mStatsReader = new IjkMediaPlayerStats.Reader() {
+        @Override
+        public void readProperties(int[] longProperties, long[] longValues,
+                                   int[] floatProperties, float[] floatValues) {
+            for (int i = 0; i < longProperties.length; i++)
+                longValues[i] = _getPropertyLong(longProperties[i], 0);
+            for (int i = 0; i < floatProperties.length; i++)
+                floatValues[i] = _getPropertyFloat(floatProperties[i], .0f);
+        }
+    };
+
     private native float _getPropertyFloat(int property, float defaultValue);
 
     private native void _setPropertyFloat(int property, float value);
@@ -903,10 +1320,12 @@ public final class IjkMediaPlayer extends AbstractMediaPlayer {
 
     private native String _getAudioCodecInfo();
 
+    @Override
     public void setOption(int category, String name, String value) {
         _setOption(category, name, value);
     }
 
+    @Override
     public void setOption(int category, String name, long value) {
         _setOption(category, name, value);
     }
@@ -977,6 +1396,9 @@ public final class IjkMediaPlayer extends AbstractMediaPlayer {
 
             switch (msg.what) {
                 case MEDIA_PREPARED:
+                    player.invalidateTrackInfo();
+                    if (player.mAudioOnly)
+                        player.disableVideoStream();
                     player.notifyOnPrepared();
                     return;
 
@@ -1028,6 +1450,9 @@ public final class IjkMediaPlayer extends AbstractMediaPlayer {
                         case MEDIA_INFO_VIDEO_RENDERING_START:
                             DebugLog.i(TAG, "Info: MEDIA_INFO_VIDEO_RENDERING_START\n");
                             break;
+                        case MEDIA_INFO_METADATA_UPDATE:
+                            player.invalidateTrackInfo();
+                            break;
                     }
                     player.notifyOnInfo(msg.arg1, msg.arg2);
                     // No real default action so far.
@@ -1163,14 +1588,23 @@ public final class IjkMediaPlayer extends AbstractMediaPlayer {
 
         switch (what) {
             case OnNativeInvokeListener.CTRL_WILL_CONCAT_RESOLVE_SEGMENT: {
+                List<String> playlist = player.mPlaylist;
                 OnControlMessageListener onControlMessageListener = player.mOnControlMessageListener;
-                if (onControlMessageListener == null)
+                if (playlist == null && onControlMessageListener == null)
                     return false;
 
                 int segmentIndex = args.getInt(OnNativeInvokeListener.ARG_SEGMENT_INDEX, -1);
                 if (segmentIndex < 0)
                     throw new InvalidParameterException("onNativeInvoke(invalid segment index)");
 
+                if (playlist != null) {
+                    if (segmentIndex >= playlist.size())
+                        throw new InvalidParameterException("onNativeInvoke(invalid segment index)");
+                    args.putString(OnNativeInvokeListener.ARG_URL, playlist.get(segmentIndex));
+                    player.onPlaylistSegmentOpened(segmentIndex);
+                    return true;
+                }
+
                 String newUrl = onControlMessageListener.onControlResolveSegmentUrl(segmentIndex);
                 if (newUrl == null)
                     throw new RuntimeException(new IOException("onNativeInvoke() = <NULL newUrl>"));
@@ -1223,7 +1657,19 @@ public final class IjkMediaPlayer extends AbstractMediaPlayer {
     public static class DefaultMediaCodecSelector implements OnMediaCodecSelectListener {
         public static final DefaultMediaCodecSelector sInstance = new DefaultMediaCodecSelector();
 
-        @SuppressWarnings("deprecation")
+        private static final IjkMediaCodecSelectionCache sCache = new IjkMediaCodecSelectionCache();
+
+        /**
+         * Persists the selected decoders in {@code dir}, e.g. {@link Context#getCacheDir()}, so
+         * later processes skip the MediaCodecList scan. Selections are kept in memory only
+         * until this is called, and are discarded after an OS update.
+         *
+         * @param dir directory to persist the selections in, null to keep them in memory only
+         */
+        public static void setCacheDirectory(File dir) {
+            sCache.setDirectory(dir);
+        }
+
         @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
         public String onMediaCodecSelect(IMediaPlayer mp, String mimeType, int profile, int level) {
             if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN)
@@ -1232,12 +1678,26 @@ public final class IjkMediaPlayer extends AbstractMediaPlayer {
             if (TextUtils.isEmpty(mimeType))
                 return null;
 
-            Log.i(TAG, String.format(Locale.US, "onSelectCodec: mime=%s, profile=%d, level=%d", mimeType, profile, level));
+            String[] cached = new String[1];
+            if (sCache.get(mimeType, profile, level, cached))
+                return cached[0];
+
+            String codecName = selectCodec(mimeType, profile, level);
+            sCache.put(mimeType, profile, level, codecName);
+            return codecName;
+        }
+
+        @SuppressWarnings("deprecation")
+        @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+        private static String selectCodec(String mimeType, int profile, int level) {
+            // the scan runs on the native prepare path, per codec dumps are for debug builds only
+            Log.i(TAG, "onSelectCodec: mime=" + mimeType + ", profile=" + profile + ", level=" + level);
             ArrayList<IjkMediaCodecInfo> candidateCodecList = new ArrayList<IjkMediaCodecInfo>();
             int numCodecs = MediaCodecList.getCodecCount();
             for (int i = 0; i < numCodecs; i++) {
                 MediaCodecInfo codecInfo = MediaCodecList.getCodecInfoAt(i);
-                Log.d(TAG, String.format(Locale.US, "  found codec: %s", codecInfo.getName()));
+                if (DebugLog.ENABLE_DEBUG)
+                    Log.d(TAG, "  found codec: " + codecInfo.getName());
                 if (codecInfo.isEncoder())
                     continue;
 
@@ -1249,7 +1709,8 @@ public final class IjkMediaPlayer extends AbstractMediaPlayer {
                     if (TextUtils.isEmpty(type))
                         continue;
 
-                    Log.d(TAG, String.format(Locale.US, "    mime: %s", type));
+                    if (DebugLog.ENABLE_DEBUG)
+                        Log.d(TAG, "    mime: " + type);
                     if (!type.equalsIgnoreCase(mimeType))
                         continue;
 
@@ -1258,8 +1719,10 @@ public final class IjkMediaPlayer extends AbstractMediaPlayer {
                         continue;
 
                     candidateCodecList.add(candidate);
-                    Log.i(TAG, String.format(Locale.US, "candidate codec: %s rank=%d", codecInfo.getName(), candidate.mRank));
-                    candidate.dumpProfileLevels(mimeType);
+                    if (DebugLog.ENABLE_DEBUG) {
+                        Log.d(TAG, "candidate codec: " + codecInfo.getName() + " rank=" + candidate.mRank);
+                        candidate.dumpProfileLevels(mimeType);
+                    }
                 }
             }
 
@@ -1276,11 +1739,11 @@ public final class IjkMediaPlayer extends AbstractMediaPlayer {
             }
 
             if (bestCodec.mRank < IjkMediaCodecInfo.RANK_LAST_CHANCE) {
-                Log.w(TAG, String.format(Locale.US, "unaccetable codec: %s", bestCodec.mCodecInfo.getName()));
+                Log.w(TAG, "unaccetable codec: " + bestCodec.mCodecInfo.getName());
                 return null;
             }
 
-            Log.i(TAG, String.format(Locale.US, "selected codec: %s rank=%d", bestCodec.mCodecInfo.getName(), bestCodec.mRank));
+            Log.i(TAG, "selected codec: " + bestCodec.mCodecInfo.getName() + " rank=" + bestCodec.mRank);
             return bestCodec.mCodecInfo.getName();
         }
     }
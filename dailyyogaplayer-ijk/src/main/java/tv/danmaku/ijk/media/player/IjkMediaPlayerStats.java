@@ -0,0 +1,188 @@
+package tv.danmaku.ijk.media.player;
+
+/**
+ * Reusable snapshot of the statistic properties of an {@link IjkMediaPlayer}, filled in one pass by
+ * {@link IjkMediaPlayer#getStats(IjkMediaPlayerStats)} instead of one getter call per property.
+ * <p>
+ * The prebuilt libijkplayer has no batch property getter, so a refresh still crosses JNI once per
+ * property, {@link #LONG_STAT_COUNT} + {@link #FLOAT_STAT_COUNT} times, like calling every getter.
+ * What the snapshot saves is the per-poll allocation and bookkeeping: values are kept in primitive
+ * arrays owned by the snapshot, so polling it from a HUD or an analytics sampler does not
+ * allocate, and all values come from the same pass. Not thread safe, use one instance per polling
+ * thread.
+ */
+public final class IjkMediaPlayerStats {
+
+    public static final int VIDEO_DECODER = 0;
+    public static final int VIDEO_CACHED_DURATION = 1;
+    public static final int AUDIO_CACHED_DURATION = 2;
+    public static final int VIDEO_CACHED_BYTES = 3;
+    public static final int AUDIO_CACHED_BYTES = 4;
+    public static final int VIDEO_CACHED_PACKETS = 5;
+    public static final int AUDIO_CACHED_PACKETS = 6;
+    public static final int ASYNC_STATISTIC_BUF_BACKWARDS = 7;
+    public static final int ASYNC_STATISTIC_BUF_FORWARDS = 8;
+    public static final int ASYNC_STATISTIC_BUF_CAPACITY = 9;
+    public static final int TRAFFIC_STATISTIC_BYTE_COUNT = 10;
+    public static final int CACHE_STATISTIC_PHYSICAL_POS = 11;
+    public static final int CACHE_STATISTIC_FILE_FORWARDS = 12;
+    public static final int CACHE_STATISTIC_FILE_POS = 13;
+    public static final int CACHE_STATISTIC_COUNT_BYTES = 14;
+    public static final int LOGICAL_FILE_SIZE = 15;
+    public static final int BIT_RATE = 16;
+    public static final int TCP_SPEED = 17;
+    public static final int LATEST_SEEK_LOAD_DURATION = 18;
+    public static final int LONG_STAT_COUNT = 19;
+
+    public static final int VIDEO_DECODE_FRAMES_PER_SECOND = 0;
+    public static final int VIDEO_OUTPUT_FRAMES_PER_SECOND = 1;
+    public static final int DROP_FRAME_RATE = 2;
+    public static final int FLOAT_STAT_COUNT = 3;
+
+    // native property ids, indexed by the stat constants above
+    static final int[] LONG_PROPERTIES = {
+            IjkMediaPlayer.FFP_PROP_INT64_VIDEO_DECODER,
+            IjkMediaPlayer.FFP_PROP_INT64_VIDEO_CACHED_DURATION,
+            IjkMediaPlayer.FFP_PROP_INT64_AUDIO_CACHED_DURATION,
+            IjkMediaPlayer.FFP_PROP_INT64_VIDEO_CACHED_BYTES,
+            IjkMediaPlayer.FFP_PROP_INT64_AUDIO_CACHED_BYTES,
+            IjkMediaPlayer.FFP_PROP_INT64_VIDEO_CACHED_PACKETS,
+            IjkMediaPlayer.FFP_PROP_INT64_AUDIO_CACHED_PACKETS,
+            IjkMediaPlayer.FFP_PROP_INT64_ASYNC_STATISTIC_BUF_BACKWARDS,
+            IjkMediaPlayer.FFP_PROP_INT64_ASYNC_STATISTIC_BUF_FORWARDS,
+            IjkMediaPlayer.FFP_PROP_INT64_ASYNC_STATISTIC_BUF_CAPACITY,
+            IjkMediaPlayer.FFP_PROP_INT64_TRAFFIC_STATISTIC_BYTE_COUNT,
+            IjkMediaPlayer.FFP_PROP_INT64_CACHE_STATISTIC_PHYSICAL_POS,
+            IjkMediaPlayer.FFP_PROP_INT64_CACHE_STATISTIC_FILE_FORWARDS,
+            IjkMediaPlayer.FFP_PROP_INT64_CACHE_STATISTIC_FILE_POS,
+            IjkMediaPlayer.FFP_PROP_INT64_CACHE_STATISTIC_COUNT_BYTES,
+            IjkMediaPlayer.FFP_PROP_INT64_LOGICAL_FILE_SIZE,
+            IjkMediaPlayer.FFP_PROP_INT64_BIT_RATE,
+            IjkMediaPlayer.FFP_PROP_INT64_TCP_SPEED,
+            IjkMediaPlayer.FFP_PROP_INT64_LATEST_SEEK_LOAD_DURATION,
+    };
+
+    static final int[] FLOAT_PROPERTIES = {
+            IjkMediaPlayer.PROP_FLOAT_VIDEO_DECODE_FRAMES_PER_SECOND,
+            IjkMediaPlayer.PROP_FLOAT_VIDEO_OUTPUT_FRAMES_PER_SECOND,
+            IjkMediaPlayer.FFP_PROP_FLOAT_DROP_FRAME_RATE,
+    };
+
+    /**
+     * Source of the property values. {@link IjkMediaPlayer} reads its native player, tests can pass
+     * a fake to {@link #read(Reader)} to exercise code consuming the snapshot without libijkplayer.
+     */
+    public interface Reader {
+        /**
+         * Fills {@code longValues[i]} with the value of {@code longProperties[i]} and
+         * {@code floatValues[i]} with the value of {@code floatProperties[i]}, 0 when unknown.
+         */
+        void readProperties(int[] longProperties, long[] longValues,
+                            int[] floatProperties, float[] floatValues);
+    }
+
+    private final long[] mLongValues = new long[LONG_STAT_COUNT];
+    private final float[] mFloatValues = new float[FLOAT_STAT_COUNT];
+
+    /**
+     * Refreshes every value of this snapshot with a single call to {@code reader}. For
+     * {@link IjkMediaPlayer} that call still reads each property with its own native call.
+     *
+     * @return this snapshot
+     */
+    public IjkMediaPlayerStats read(Reader reader) {
+        reader.readProperties(LONG_PROPERTIES, mLongValues, FLOAT_PROPERTIES, mFloatValues);
+        return this;
+    }
+
+    /** Resets every value to 0. */
+    public void clear() {
+        for (int i = 0; i < LONG_STAT_COUNT; i++)
+            mLongValues[i] = 0;
+        for (int i = 0; i < FLOAT_STAT_COUNT; i++)
+            mFloatValues[i] = 0f;
+    }
+
+    /**
+     * @param stat one of the long stat constants, e.g. {@link #TCP_SPEED}
+     */
+    public long getLong(int stat) {
+        return mLongValues[stat];
+    }
+
+    /**
+     * @param stat one of the float stat constants, e.g. {@link #DROP_FRAME_RATE}
+     */
+    public float getFloat(int stat) {
+        return mFloatValues[stat];
+    }
+
+    /**
+     * Copies the long values into {@code out}, indexed by the long stat constants.
+     *
+     * @param out array of at least {@link #LONG_STAT_COUNT} elements
+     */
+    public void copyLongsTo(long[] out) {
+        System.arraycopy(mLongValues, 0, out, 0, LONG_STAT_COUNT);
+    }
+
+    public int getVideoDecoder() {
+        return (int) mLongValues[VIDEO_DECODER];
+    }
+
+    public long getVideoCachedDuration() {
+        return mLongValues[VIDEO_CACHED_DURATION];
+    }
+
+    public long getAudioCachedDuration() {
+        return mLongValues[AUDIO_CACHED_DURATION];
+    }
+
+    public long getVideoCachedBytes() {
+        return mLongValues[VIDEO_CACHED_BYTES];
+    }
+
+    public long getAudioCachedBytes() {
+        return mLongValues[AUDIO_CACHED_BYTES];
+    }
+
+    public long getVideoCachedPackets() {
+        return mLongValues[VIDEO_CACHED_PACKETS];
+    }
+
+    public long getAudioCachedPackets() {
+        return mLongValues[AUDIO_CACHED_PACKETS];
+    }
+
+    public long getTrafficStatisticByteCount() {
+        return mLongValues[TRAFFIC_STATISTIC_BYTE_COUNT];
+    }
+
+    public long getFileSize() {
+        return mLongValues[LOGICAL_FILE_SIZE];
+    }
+
+    public long getBitRate() {
+        return mLongValues[BIT_RATE];
+    }
+
+    public long getTcpSpeed() {
+        return mLongValues[TCP_SPEED];
+    }
+
+    public long getSeekLoadDuration() {
+        return mLongValues[LATEST_SEEK_LOAD_DURATION];
+    }
+
+    public float getVideoDecodeFramesPerSecond() {
+        return mFloatValues[VIDEO_DECODE_FRAMES_PER_SECOND];
+    }
+
+    public float getVideoOutputFramesPerSecond() {
+        return mFloatValues[VIDEO_OUTPUT_FRAMES_PER_SECOND];
+    }
+
+    public float getDropFrameRate() {
+        return mFloatValues[DROP_FRAME_RATE];
+    }
+}
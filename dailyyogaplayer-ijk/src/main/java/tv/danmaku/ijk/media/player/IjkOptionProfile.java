@@ -0,0 +1,297 @@
+package tv.danmaku.ijk.media.player;
+
+/**
+ * Typed, validated set of ijk tuning options, applied to a player before
+ * {@link IjkMediaPlayer#prepareAsync()} with {@link #applyTo(OptionSink)}.
+ * <p>
+ * Unset values are not applied, leaving the ijk default. Start from one of the presets and adjust
+ * it with {@link Builder#Builder(IjkOptionProfile)}:
+ * <pre>
+ * IjkOptionProfile profile = new IjkOptionProfile.Builder(IjkOptionProfile.FAST_START)
+ *         .setReconnect(true)
+ *         .build();
+ * </pre>
+ */
+public final class IjkOptionProfile {
+
+    public static final int UNSET = -1;
+
+    // values of skip_loop_filter, from AVDiscard
+    public static final int AVDISCARD_NONE = -16;
+    public static final int AVDISCARD_DEFAULT = 0;
+    public static final int AVDISCARD_NONREF = 8;
+    public static final int AVDISCARD_BIDIR = 16;
+    public static final int AVDISCARD_NONINTRA = 24;
+    public static final int AVDISCARD_NONKEY = 32;
+    public static final int AVDISCARD_ALL = 48;
+
+    // bounds checked by ff_ffplay_options.h
+    private static final int MAX_FRAMEDROP = 120;
+    private static final int MIN_MIN_FRAMES = 2;
+    private static final int MAX_MIN_FRAMES = 50000;
+    private static final int MAX_BUFFER_SIZE = 15 * 1024 * 1024;
+    private static final int MIN_PROBE_SIZE = 32;
+
+    /** The options the player always used: frame dropping and no loop filter. */
+    public static final IjkOptionProfile DEFAULT = new Builder("default")
+            .setFramedrop(1)
+            .setStartOnPrepared(false)
+            .setHttpDetectRangeSupport(false)
+            .setSkipLoopFilter(AVDISCARD_ALL)
+            .build();
+
+    /** Probes less of the stream before opening the decoders, for quick previews and feeds. */
+    public static final IjkOptionProfile FAST_START = new Builder(DEFAULT, "fast-start")
+            .setProbeSize(128 * 1024)
+            .setAnalyzeDurationUs(1000000)
+            .build();
+
+    /** Plays packets as soon as they are demuxed, for live streams. */
+    public static final IjkOptionProfile LOW_LATENCY = new Builder(DEFAULT, "low-latency")
+            .setFramedrop(5)
+            .setProbeSize(32 * 1024)
+            .setAnalyzeDurationUs(100000)
+            .setPacketBuffering(false)
+            .setNoBuffer(true)
+            .setReconnect(true)
+            .build();
+
+    /** Caps the packet queues for low-RAM devices. */
+    public static final IjkOptionProfile LOW_MEMORY = new Builder(DEFAULT, "low-memory")
+            .setMaxBufferSize(2 * 1024 * 1024)
+            .setMinFrames(25)
+            .build();
+
+    /**
+     * Receives the options, implemented by {@link IjkMediaPlayer}. A recording sink lets tests
+     * check a profile without the native player.
+     */
+    public interface OptionSink {
+        void setOption(int category, String name, String value);
+
+        void setOption(int category, String name, long value);
+    }
+
+    private final String mName;
+    private final int mFramedrop;
+    private final int mSkipLoopFilter;
+    private final int mStartOnPrepared;
+    private final int mHttpDetectRangeSupport;
+    private final long mProbeSize;
+    private final long mAnalyzeDurationUs;
+    private final int mMaxBufferSize;
+    private final int mMinFrames;
+    private final int mPacketBuffering;
+    private final int mNoBuffer;
+    private final int mReconnect;
+
+    private IjkOptionProfile(Builder builder) {
+        mName = builder.mName;
+        mFramedrop = builder.mFramedrop;
+        mSkipLoopFilter = builder.mSkipLoopFilter;
+        mStartOnPrepared = builder.mStartOnPrepared;
+        mHttpDetectRangeSupport = builder.mHttpDetectRangeSupport;
+        mProbeSize = builder.mProbeSize;
+        mAnalyzeDurationUs = builder.mAnalyzeDurationUs;
+        mMaxBufferSize = builder.mMaxBufferSize;
+        mMinFrames = builder.mMinFrames;
+        mPacketBuffering = builder.mPacketBuffering;
+        mNoBuffer = builder.mNoBuffer;
+        mReconnect = builder.mReconnect;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public void applyTo(OptionSink sink) {
+        apply(sink, IjkMediaPlayer.OPT_CATEGORY_PLAYER, "framedrop", mFramedrop);
+        apply(sink, IjkMediaPlayer.OPT_CATEGORY_PLAYER, "start-on-prepared", mStartOnPrepared);
+        apply(sink, IjkMediaPlayer.OPT_CATEGORY_PLAYER, "max-buffer-size", mMaxBufferSize);
+        apply(sink, IjkMediaPlayer.OPT_CATEGORY_PLAYER, "min-frames", mMinFrames);
+        apply(sink, IjkMediaPlayer.OPT_CATEGORY_PLAYER, "packet-buffering", mPacketBuffering);
+        apply(sink, IjkMediaPlayer.OPT_CATEGORY_FORMAT, "http-detect-range-support", mHttpDetectRangeSupport);
+        apply(sink, IjkMediaPlayer.OPT_CATEGORY_FORMAT, "probesize", mProbeSize);
+        apply(sink, IjkMediaPlayer.OPT_CATEGORY_FORMAT, "analyzeduration", mAnalyzeDurationUs);
+        apply(sink, IjkMediaPlayer.OPT_CATEGORY_FORMAT, "reconnect", mReconnect);
+        if (mNoBuffer == 1)
+            sink.setOption(IjkMediaPlayer.OPT_CATEGORY_FORMAT, "fflags", "nobuffer");
+        // AVDISCARD_NONE is negative, so UNSET can't mark it
+        if (mSkipLoopFilter != Builder.SKIP_LOOP_FILTER_UNSET)
+            sink.setOption(IjkMediaPlayer.OPT_CATEGORY_CODEC, "skip_loop_filter", mSkipLoopFilter);
+    }
+
+    private static void apply(OptionSink sink, int category, String name, long value) {
+        if (value != UNSET)
+            sink.setOption(category, name, value);
+    }
+
+    @Override
+    public String toString() {
+        return "IjkOptionProfile{" + mName + '}';
+    }
+
+    public static final class Builder {
+        private static final int SKIP_LOOP_FILTER_UNSET = Integer.MIN_VALUE;
+
+        private String mName;
+        private int mFramedrop = UNSET;
+        private int mSkipLoopFilter = SKIP_LOOP_FILTER_UNSET;
+        private int mStartOnPrepared = UNSET;
+        private int mHttpDetectRangeSupport = UNSET;
+        private long mProbeSize = UNSET;
+        private long mAnalyzeDurationUs = UNSET;
+        private int mMaxBufferSize = UNSET;
+        private int mMinFrames = UNSET;
+        private int mPacketBuffering = UNSET;
+        private int mNoBuffer = UNSET;
+        private int mReconnect = UNSET;
+
+        public Builder() {
+            this("custom");
+        }
+
+        public Builder(String name) {
+            mName = name;
+        }
+
+        /** Starts from the values of {@code base}. */
+        public Builder(IjkOptionProfile base) {
+            this(base, base.mName);
+        }
+
+        private Builder(IjkOptionProfile base, String name) {
+            mName = name;
+            mFramedrop = base.mFramedrop;
+            mSkipLoopFilter = base.mSkipLoopFilter;
+            mStartOnPrepared = base.mStartOnPrepared;
+            mHttpDetectRangeSupport = base.mHttpDetectRangeSupport;
+            mProbeSize = base.mProbeSize;
+            mAnalyzeDurationUs = base.mAnalyzeDurationUs;
+            mMaxBufferSize = base.mMaxBufferSize;
+            mMinFrames = base.mMinFrames;
+            mPacketBuffering = base.mPacketBuffering;
+            mNoBuffer = base.mNoBuffer;
+            mReconnect = base.mReconnect;
+        }
+
+        public Builder setName(String name) {
+            mName = name;
+            return this;
+        }
+
+        /**
+         * @param framedrop frames the player may drop when the video is late, 0 to 120
+         */
+        public Builder setFramedrop(int framedrop) {
+            checkRange("framedrop", framedrop, 0, MAX_FRAMEDROP);
+            mFramedrop = framedrop;
+            return this;
+        }
+
+        /**
+         * @param skipLoopFilter one of the AVDISCARD_* constants; frames it matches skip the
+         *                       H.264 loop filter, trading picture quality for decode time
+         */
+        public Builder setSkipLoopFilter(int skipLoopFilter) {
+            switch (skipLoopFilter) {
+                case AVDISCARD_NONE:
+                case AVDISCARD_DEFAULT:
+                case AVDISCARD_NONREF:
+                case AVDISCARD_BIDIR:
+                case AVDISCARD_NONINTRA:
+                case AVDISCARD_NONKEY:
+                case AVDISCARD_ALL:
+                    mSkipLoopFilter = skipLoopFilter;
+                    return this;
+                default:
+                    throw new IllegalArgumentException("skip_loop_filter is not an AVDISCARD value: " + skipLoopFilter);
+            }
+        }
+
+        /**
+         * @param startOnPrepared whether playback starts by itself once prepared
+         */
+        public Builder setStartOnPrepared(boolean startOnPrepared) {
+            mStartOnPrepared = startOnPrepared ? 1 : 0;
+            return this;
+        }
+
+        /**
+         * @param httpDetectRangeSupport whether the http protocol probes range support first
+         */
+        public Builder setHttpDetectRangeSupport(boolean httpDetectRangeSupport) {
+            mHttpDetectRangeSupport = httpDetectRangeSupport ? 1 : 0;
+            return this;
+        }
+
+        /**
+         * @param probeSize bytes read to detect the format and streams, at least 32
+         */
+        public Builder setProbeSize(long probeSize) {
+            checkRange("probesize", probeSize, MIN_PROBE_SIZE, Long.MAX_VALUE);
+            mProbeSize = probeSize;
+            return this;
+        }
+
+        /**
+         * @param analyzeDurationUs duration of the stream analyzed to find its parameters
+         */
+        public Builder setAnalyzeDurationUs(long analyzeDurationUs) {
+            checkRange("analyzeduration", analyzeDurationUs, 0, Long.MAX_VALUE);
+            mAnalyzeDurationUs = analyzeDurationUs;
+            return this;
+        }
+
+        /**
+         * @param maxBufferSize bytes of demuxed packets kept ahead, 0 for the ijk default, up to 15 MB
+         */
+        public Builder setMaxBufferSize(int maxBufferSize) {
+            checkRange("max-buffer-size", maxBufferSize, 0, MAX_BUFFER_SIZE);
+            mMaxBufferSize = maxBufferSize;
+            return this;
+        }
+
+        /**
+         * @param minFrames queued frames per stream after which reading pauses, 2 to 50000
+         */
+        public Builder setMinFrames(int minFrames) {
+            checkRange("min-frames", minFrames, MIN_MIN_FRAMES, MAX_MIN_FRAMES);
+            mMinFrames = minFrames;
+            return this;
+        }
+
+        /**
+         * @param packetBuffering whether playback pauses to buffer packets when the queues run dry
+         */
+        public Builder setPacketBuffering(boolean packetBuffering) {
+            mPacketBuffering = packetBuffering ? 1 : 0;
+            return this;
+        }
+
+        /**
+         * @param noBuffer whether the demuxer skips its own probing buffer (fflags=nobuffer)
+         */
+        public Builder setNoBuffer(boolean noBuffer) {
+            mNoBuffer = noBuffer ? 1 : 0;
+            return this;
+        }
+
+        /**
+         * @param reconnect whether the http protocol reconnects after a dropped connection
+         */
+        public Builder setReconnect(boolean reconnect) {
+            mReconnect = reconnect ? 1 : 0;
+            return this;
+        }
+
+        public IjkOptionProfile build() {
+            return new IjkOptionProfile(this);
+        }
+
+        private static void checkRange(String name, long value, long min, long max) {
+            if (value < min || value > max)
+                throw new IllegalArgumentException(name + " out of range [" + min + ", " + max + "]: " + value);
+        }
+    }
+}
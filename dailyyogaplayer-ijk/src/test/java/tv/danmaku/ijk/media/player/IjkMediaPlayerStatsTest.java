@@ -0,0 +1,117 @@
+package tv.danmaku.ijk.media.player;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives {@link IjkMediaPlayerStats} with a fake {@link IjkMediaPlayerStats.Reader}, so every
+ * slot and getter is checked against the property it is meant to hold, without libijkplayer.
+ */
+public class IjkMediaPlayerStatsTest {
+
+    @Test
+    public void readerIsAskedForEveryPropertyOnce() {
+        FakeReader reader = new FakeReader();
+        IjkMediaPlayerStats stats = new IjkMediaPlayerStats();
+        assertSame(stats, stats.read(reader));
+
+        assertEquals(1, reader.mCalls);
+        assertEquals(IjkMediaPlayerStats.LONG_STAT_COUNT, reader.mLongProperties.length);
+        assertEquals(IjkMediaPlayerStats.FLOAT_STAT_COUNT, reader.mFloatProperties.length);
+
+        Set<Integer> properties = new HashSet<>();
+        for (int property : reader.mLongProperties)
+            assertTrue("property " + property + " read twice", properties.add(property));
+        for (int property : reader.mFloatProperties)
+            assertTrue("property " + property + " read twice", properties.add(property));
+    }
+
+    @Test
+    public void everyFieldIsFilledFromItsProperty() {
+        IjkMediaPlayerStats stats = new IjkMediaPlayerStats().read(new FakeReader());
+
+        for (int i = 0; i < IjkMediaPlayerStats.LONG_STAT_COUNT; i++) {
+            long value = stats.getLong(i);
+            assertNotEquals("long stat " + i + " not filled", 0, value);
+            assertEquals(FakeReader.longValue(IjkMediaPlayerStats.LONG_PROPERTIES[i]), value);
+        }
+        for (int i = 0; i < IjkMediaPlayerStats.FLOAT_STAT_COUNT; i++) {
+            float value = stats.getFloat(i);
+            assertNotEquals("float stat " + i + " not filled", 0f, value, 0f);
+            assertEquals(FakeReader.floatValue(IjkMediaPlayerStats.FLOAT_PROPERTIES[i]), value, 0f);
+        }
+    }
+
+    @Test
+    public void gettersMatchTheirProperties() {
+        IjkMediaPlayerStats stats = new IjkMediaPlayerStats().read(new FakeReader());
+
+        assertEquals(FakeReader.longValue(IjkMediaPlayer.FFP_PROP_INT64_VIDEO_DECODER), stats.getVideoDecoder());
+        assertEquals(FakeReader.longValue(IjkMediaPlayer.FFP_PROP_INT64_VIDEO_CACHED_DURATION), stats.getVideoCachedDuration());
+        assertEquals(FakeReader.longValue(IjkMediaPlayer.FFP_PROP_INT64_AUDIO_CACHED_DURATION), stats.getAudioCachedDuration());
+        assertEquals(FakeReader.longValue(IjkMediaPlayer.FFP_PROP_INT64_VIDEO_CACHED_BYTES), stats.getVideoCachedBytes());
+        assertEquals(FakeReader.longValue(IjkMediaPlayer.FFP_PROP_INT64_AUDIO_CACHED_BYTES), stats.getAudioCachedBytes());
+        assertEquals(FakeReader.longValue(IjkMediaPlayer.FFP_PROP_INT64_VIDEO_CACHED_PACKETS), stats.getVideoCachedPackets());
+        assertEquals(FakeReader.longValue(IjkMediaPlayer.FFP_PROP_INT64_AUDIO_CACHED_PACKETS), stats.getAudioCachedPackets());
+        assertEquals(FakeReader.longValue(IjkMediaPlayer.FFP_PROP_INT64_TRAFFIC_STATISTIC_BYTE_COUNT), stats.getTrafficStatisticByteCount());
+        assertEquals(FakeReader.longValue(IjkMediaPlayer.FFP_PROP_INT64_LOGICAL_FILE_SIZE), stats.getFileSize());
+        assertEquals(FakeReader.longValue(IjkMediaPlayer.FFP_PROP_INT64_BIT_RATE), stats.getBitRate());
+        assertEquals(FakeReader.longValue(IjkMediaPlayer.FFP_PROP_INT64_TCP_SPEED), stats.getTcpSpeed());
+        assertEquals(FakeReader.longValue(IjkMediaPlayer.FFP_PROP_INT64_LATEST_SEEK_LOAD_DURATION), stats.getSeekLoadDuration());
+
+        assertEquals(FakeReader.floatValue(IjkMediaPlayer.PROP_FLOAT_VIDEO_DECODE_FRAMES_PER_SECOND), stats.getVideoDecodeFramesPerSecond(), 0f);
+        assertEquals(FakeReader.floatValue(IjkMediaPlayer.PROP_FLOAT_VIDEO_OUTPUT_FRAMES_PER_SECOND), stats.getVideoOutputFramesPerSecond(), 0f);
+        assertEquals(FakeReader.floatValue(IjkMediaPlayer.FFP_PROP_FLOAT_DROP_FRAME_RATE), stats.getDropFrameRate(), 0f);
+    }
+
+    @Test
+    public void copyLongsToAndClear() {
+        IjkMediaPlayerStats stats = new IjkMediaPlayerStats().read(new FakeReader());
+
+        long[] copy = new long[IjkMediaPlayerStats.LONG_STAT_COUNT];
+        stats.copyLongsTo(copy);
+        for (int i = 0; i < copy.length; i++)
+            assertEquals(stats.getLong(i), copy[i]);
+
+        stats.clear();
+        for (int i = 0; i < IjkMediaPlayerStats.LONG_STAT_COUNT; i++)
+            assertEquals(0, stats.getLong(i));
+        for (int i = 0; i < IjkMediaPlayerStats.FLOAT_STAT_COUNT; i++)
+            assertEquals(0f, stats.getFloat(i), 0f);
+    }
+
+    private static final class FakeReader implements IjkMediaPlayerStats.Reader {
+        int mCalls;
+        int[] mLongProperties;
+        int[] mFloatProperties;
+
+        static long longValue(int property) {
+            return 1000L + property;
+        }
+
+        static float floatValue(int property) {
+            return property + .5f;
+        }
+
+        @Override
+        public void readProperties(int[] longProperties, long[] longValues,
+                                   int[] floatProperties, float[] floatValues) {
+            mCalls++;
+            mLongProperties = longProperties.clone();
+            mFloatProperties = floatProperties.clone();
+            assertEquals(longProperties.length, longValues.length);
+            assertEquals(floatProperties.length, floatValues.length);
+            for (int i = 0; i < longProperties.length; i++)
+                longValues[i] = longValue(longProperties[i]);
+            for (int i = 0; i < floatProperties.length; i++)
+                floatValues[i] = floatValue(floatProperties[i]);
+        }
+    }
+}
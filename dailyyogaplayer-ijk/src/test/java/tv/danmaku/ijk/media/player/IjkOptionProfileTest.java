@@ -0,0 +1,155 @@
+package tv.danmaku.ijk.media.player;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the options {@link IjkOptionProfile} applies through a recording
+ * {@link IjkOptionProfile.OptionSink}, without the native player.
+ */
+public class IjkOptionProfileTest {
+    private static final int PLAYER = IjkMediaPlayer.OPT_CATEGORY_PLAYER;
+    private static final int FORMAT = IjkMediaPlayer.OPT_CATEGORY_FORMAT;
+    private static final int CODEC = IjkMediaPlayer.OPT_CATEGORY_CODEC;
+
+    @Test
+    public void defaultReproducesTheHardCodedOptions() {
+        assertOptions(IjkOptionProfile.DEFAULT,
+                option(PLAYER, "framedrop", 1),
+                option(PLAYER, "start-on-prepared", 0),
+                option(FORMAT, "http-detect-range-support", 0),
+                option(CODEC, "skip_loop_filter", 48));
+    }
+
+    @Test
+    public void fastStart() {
+        assertOptions(IjkOptionProfile.FAST_START,
+                option(PLAYER, "framedrop", 1),
+                option(PLAYER, "start-on-prepared", 0),
+                option(FORMAT, "http-detect-range-support", 0),
+                option(FORMAT, "probesize", 128 * 1024),
+                option(FORMAT, "analyzeduration", 1000000),
+                option(CODEC, "skip_loop_filter", 48));
+    }
+
+    @Test
+    public void lowLatency() {
+        assertOptions(IjkOptionProfile.LOW_LATENCY,
+                option(PLAYER, "framedrop", 5),
+                option(PLAYER, "start-on-prepared", 0),
+                option(PLAYER, "packet-buffering", 0),
+                option(FORMAT, "http-detect-range-support", 0),
+                option(FORMAT, "probesize", 32 * 1024),
+                option(FORMAT, "analyzeduration", 100000),
+                option(FORMAT, "reconnect", 1),
+                option(FORMAT, "fflags", "nobuffer"),
+                option(CODEC, "skip_loop_filter", 48));
+    }
+
+    @Test
+    public void lowMemory() {
+        assertOptions(IjkOptionProfile.LOW_MEMORY,
+                option(PLAYER, "framedrop", 1),
+                option(PLAYER, "start-on-prepared", 0),
+                option(PLAYER, "max-buffer-size", 2 * 1024 * 1024),
+                option(PLAYER, "min-frames", 25),
+                option(FORMAT, "http-detect-range-support", 0),
+                option(CODEC, "skip_loop_filter", 48));
+    }
+
+    @Test
+    public void unsetFieldsAreSkipped() {
+        assertOptions(new IjkOptionProfile.Builder().build());
+        assertOptions(new IjkOptionProfile.Builder().setProbeSize(4096).build(),
+                option(FORMAT, "probesize", 4096));
+        // no fflags unless nobuffer is asked for
+        assertOptions(new IjkOptionProfile.Builder().setNoBuffer(false).build());
+    }
+
+    @Test
+    public void skipLoopFilterNoneIsNotMistakenForUnset() {
+        assertOptions(new IjkOptionProfile.Builder()
+                        .setSkipLoopFilter(IjkOptionProfile.AVDISCARD_NONE)
+                        .build(),
+                option(CODEC, "skip_loop_filter", -16));
+    }
+
+    @Test
+    public void builderStartsFromItsBase() {
+        IjkOptionProfile profile = new IjkOptionProfile.Builder(IjkOptionProfile.DEFAULT)
+                .setFramedrop(3)
+                .setName("tuned")
+                .build();
+        assertEquals("tuned", profile.getName());
+        assertEquals("default", IjkOptionProfile.DEFAULT.getName());
+        assertOptions(profile,
+                option(PLAYER, "framedrop", 3),
+                option(PLAYER, "start-on-prepared", 0),
+                option(FORMAT, "http-detect-range-support", 0),
+                option(CODEC, "skip_loop_filter", 48));
+    }
+
+    @Test
+    public void builderRejectsOutOfRangeValues() {
+        assertRejected(() -> new IjkOptionProfile.Builder().setFramedrop(-1));
+        assertRejected(() -> new IjkOptionProfile.Builder().setFramedrop(121));
+        assertRejected(() -> new IjkOptionProfile.Builder().setSkipLoopFilter(7));
+        assertRejected(() -> new IjkOptionProfile.Builder().setProbeSize(31));
+        assertRejected(() -> new IjkOptionProfile.Builder().setAnalyzeDurationUs(-1));
+        assertRejected(() -> new IjkOptionProfile.Builder().setMaxBufferSize(-1));
+        assertRejected(() -> new IjkOptionProfile.Builder().setMaxBufferSize(15 * 1024 * 1024 + 1));
+        assertRejected(() -> new IjkOptionProfile.Builder().setMinFrames(1));
+        assertRejected(() -> new IjkOptionProfile.Builder().setMinFrames(50001));
+
+        // the bounds themselves are valid
+        new IjkOptionProfile.Builder()
+                .setFramedrop(0).setFramedrop(120)
+                .setProbeSize(32)
+                .setAnalyzeDurationUs(0)
+                .setMaxBufferSize(0).setMaxBufferSize(15 * 1024 * 1024)
+                .setMinFrames(2).setMinFrames(50000)
+                .build();
+    }
+
+    private static void assertOptions(IjkOptionProfile profile, String... expected) {
+        RecordingSink sink = new RecordingSink();
+        profile.applyTo(sink);
+        List<String> sorted = new ArrayList<>(sink.mOptions);
+        sorted.sort(null);
+        List<String> expectedSorted = new ArrayList<>(Arrays.asList(expected));
+        expectedSorted.sort(null);
+        assertEquals(profile.toString(), expectedSorted, sorted);
+    }
+
+    private static void assertRejected(Runnable call) {
+        try {
+            call.run();
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static String option(int category, String name, Object value) {
+        return category + "/" + name + "=" + value;
+    }
+
+    private static final class RecordingSink implements IjkOptionProfile.OptionSink {
+        final List<String> mOptions = new ArrayList<>();
+
+        @Override
+        public void setOption(int category, String name, String value) {
+            mOptions.add(option(category, name, value));
+        }
+
+        @Override
+        public void setOption(int category, String name, long value) {
+            mOptions.add(option(category, name, value));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.dailyyoga.cn.media;
+
+import com.dailyyoga.cn.media.misc.IMediaDataSource;
+
+import java.io.IOException;
+
+/**
+ * Decorator serving reads from a shared {@link MediaDataSourceBlockCache}, loading missing
+ * pages from the wrapped source. Upstream reads are serialized per instance.
+ */
+public class CachedMediaDataSource implements IMediaDataSource {
+    private final IMediaDataSource mUpstream;
+    private final String mSourceId;
+    private final MediaDataSourceBlockCache mCache;
+    private final int mPageSize;
+    private final long mSize;
+
+    public CachedMediaDataSource(IMediaDataSource upstream, String sourceId) throws IOException {
+        this(upstream, sourceId, MediaDataSourceBlockCache.getInstance());
+    }
+
+    public CachedMediaDataSource(IMediaDataSource upstream, String sourceId,
+                                 MediaDataSourceBlockCache cache) throws IOException {
+        mUpstream = upstream;
+        mSourceId = sourceId;
+        mCache = cache;
+        mPageSize = cache.getPageSize();
+        mSize = upstream.getSize();
+    }
+
+    @Override
+    public int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
+        if (size == 0)
+            return 0;
+
+        int total = 0;
+        while (total < size) {
+            long current = position + total;
+            long pageIndex = current / mPageSize;
+            byte[] page = getPage(pageIndex);
+            int pageOffset = (int) (current - pageIndex * mPageSize);
+            if (page != null && pageOffset >= page.length && page.length < mPageSize
+                    && (mSize < 0 || current < mSize)) {
+                // the upstream came back short before reaching this offset, read past it directly
+                int read;
+                synchronized (this) {
+                    read = mUpstream.readAt(current, buffer, offset + total, size - total);
+                }
+                if (read > 0)
+                    total += read;
+                break;
+            }
+            if (page == null || pageOffset >= page.length)
+                break;
+
+            int count = Math.min(size - total, page.length - pageOffset);
+            System.arraycopy(page, pageOffset, buffer, offset + total, count);
+            total += count;
+            if (page.length < mPageSize)
+                break;
+        }
+        return total > 0 ? total : -1;
+    }
+
+    private byte[] getPage(long pageIndex) throws IOException {
+        byte[] page = mCache.get(mSourceId, pageIndex);
+        if (page != null)
+            return page;
+
+        long start = pageIndex * mPageSize;
+        if (mSize >= 0 && start >= mSize)
+            return null;
+
+        byte[] data = new byte[mPageSize];
+        int length = 0;
+        boolean endOfStream = false;
+        synchronized (this) {
+            while (length < mPageSize) {
+                int read = mUpstream.readAt(start + length, data, length, mPageSize - length);
+                if (read <= 0) {
+                    endOfStream = read < 0;
+                    break;
+                }
+                length += read;
+            }
+        }
+        if (length == 0)
+            return null;
+
+        if (length < mPageSize) {
+            byte[] shortPage = new byte[length];
+            System.arraycopy(data, 0, shortPage, 0, length);
+            data = shortPage;
+            // only the last page of the file may be short; a short read before it is served
+            // once and retried on the next access instead of becoming a permanent EOF
+            boolean lastPage = mSize >= 0 ? start + length >= mSize : endOfStream;
+            if (!lastPage)
+                return data;
+        }
+        mCache.put(mSourceId, pageIndex, data);
+        return data;
+    }
+
+    @Override
+    public long getSize() throws IOException {
+        return mSize;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mUpstream.close();
+    }
+}
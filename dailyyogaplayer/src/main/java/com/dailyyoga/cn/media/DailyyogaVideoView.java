@@ -36,13 +36,18 @@ import android.widget.MediaController;
 import androidx.annotation.NonNull;
 
 import com.dailyyoga.cn.media.android.AndroidMediaPlayer;
+import com.dailyyoga.cn.media.download.DownloadManager;
 import com.dailyyoga.cn.media.exo.DailyyogaExoMediaPlayer;
+import com.dailyyoga.cn.media.exo.demo.player.DemoUtil;
 import com.dailyyoga.cn.media.misc.IMediaDataSource;
 import com.dailyyoga.cn.media.misc.ITrackInfo;
+import com.dailyyoga.cn.media.proxy.MediaCacheProxy;
 import com.dailyyoga.cn.media.services.MediaPlayerService;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
@@ -58,6 +63,10 @@ public class DailyyogaVideoView extends FrameLayout implements MediaController.M
     private Uri mUri;
     private String mManifestString;
     private Map<String, String> mHeaders;
+    private List<Uri> mPlaylist;
+    // absolute index of the item playing, and of the item the current player started at
+    private int mPlaylistIndex;
+    private int mPlaylistOpenedAt;
 
     // all possible internal states
     private static final int STATE_ERROR = -1;
@@ -68,6 +77,9 @@ public class DailyyogaVideoView extends FrameLayout implements MediaController.M
     private static final int STATE_PAUSED = 4;
     private static final int STATE_PLAYBACK_COMPLETED = 5;
 
+    // seekTo(int) leaves the precision to the backend, as before seek modes existed
+    private static final int SEEK_MODE_DEFAULT = -1;
+
     // mCurrentState is a VideoView object's current state.
     // mTargetState is the state that a method caller intends to reach.
     // For instance, regardless the VideoView object's current state,
@@ -92,6 +104,7 @@ public class DailyyogaVideoView extends FrameLayout implements MediaController.M
     private IMediaPlayer.OnErrorListener mOnErrorListener;
     private IMediaPlayer.OnInfoListener mOnInfoListener;
     private IMediaPlayer.OnBufferingUpdateListener mOnBufferingUpdateListener;
+    private IMediaPlayer.OnPlaylistTransitionListener mOnPlaylistTransitionListener;
     private int mSeekWhenPrepared;  // recording the seek position while preparing
 
     /** Subtitle rendering widget overlaid on top of the video. */
@@ -140,6 +153,23 @@ public class DailyyogaVideoView extends FrameLayout implements MediaController.M
     // REMOVED: onInitializeAccessibilityNodeInfo
     // REMOVED: resolveAdjustedSize
 
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        updateViewportSize();
+    }
+
+    /**
+     * Lets the Exo backend skip renditions larger than the area the video is shown in.
+     */
+    private void updateViewportSize() {
+        IMediaPlayer mediaPlayer = mMediaPlayer;
+        while (mediaPlayer instanceof MediaPlayerProxy)
+            mediaPlayer = ((MediaPlayerProxy) mediaPlayer).getInternalMediaPlayer();
+        if (mediaPlayer instanceof DailyyogaExoMediaPlayer)
+            ((DailyyogaExoMediaPlayer) mediaPlayer).setViewportSize(getWidth(), getHeight());
+    }
+
     private void initVideoView(Context context) {
         mAppContext = context.getApplicationContext();
         setPVOptions(new PVOptions());
@@ -262,16 +292,45 @@ public class DailyyogaVideoView extends FrameLayout implements MediaController.M
         Log.d(TAG, "uri: " + uri.toString());
         mUri = uri;
         mHeaders = headers;
+        mPlaylist = null;
+        mSeekWhenPrepared = 0;
+        mRangeDataSourceFailed = false;
+        openVideo();
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Plays {@code uris} back to back on one player; each next item is buffered while the
+     * current one plays, so there is no re-prepare or black frame between items.
+     *
+     * @param uris    the URIs of the videos, in play order.
+     * @param headers the headers for every URI request.
+     */
+    public void setVideoPlaylist(List<Uri> uris, Map<String, String> headers) {
+        if (uris == null || uris.isEmpty())
+            throw new IllegalArgumentException("empty playlist");
+
+        Log.d(TAG, "playlist: " + uris.size() + " items");
+        mPlaylist = new ArrayList<>(uris);
+        mPlaylistIndex = 0;
+        mUri = mPlaylist.get(0);
+        mHeaders = headers;
         mSeekWhenPrepared = 0;
         openVideo();
         requestLayout();
         invalidate();
     }
 
+    public int getCurrentPlaylistIndex() {
+        return mPlaylistIndex;
+    }
+
     // REMOVED: addSubtitleSource
     // REMOVED: mPendingSubtitleTracks
 
     public void stopPlayback() {
+        mOpenPendingNativeReady = false;
         if (mMediaPlayer != null) {
             mMediaPlayer.stop();
             mMediaPlayer.release();
@@ -283,12 +342,40 @@ public class DailyyogaVideoView extends FrameLayout implements MediaController.M
         }
     }
 
+    private boolean mOpenPendingNativeReady;
+
+    private RangeHttpMediaDataSource mRangeDataSource;
+    // set once the range source can't probe mUri, it is played as a plain URI from then on
+    private boolean mRangeDataSourceFailed;
+
+    private final Runnable mOpenWhenNativeReady = () -> {
+        if (!mOpenPendingNativeReady)
+            return;
+        mOpenPendingNativeReady = false;
+        openVideo();
+    };
+
+    private boolean isUsingIjkMediaPlayer() {
+        // createPlayer falls back to ijk for unknown players
+        int player = mPVOptions.getPlayer();
+        return player != PVOptions.PV_PLAYER_ANDROID_MEDIA_PLAYER
+                && player != PVOptions.PV_PLAYER_DAILYYOGA_EXO_MEDIA_PLAYER;
+    }
+
     @TargetApi(Build.VERSION_CODES.M)
     private void openVideo() {
         if (mUri == null || mSurfaceHolder == null) {
             // not ready for playback just yet, will try again later
             return;
         }
+        if (isUsingIjkMediaPlayer() && !IjkMediaPlayer.isNativeReady()) {
+            // libijkplayer is loaded off the main thread, open once it is ready
+            if (!mOpenPendingNativeReady) {
+                mOpenPendingNativeReady = true;
+                IjkMediaPlayer.runWhenNativeReady(mOpenWhenNativeReady);
+            }
+            return;
+        }
         // we shouldn't clear the target state, because somebody might have
         // called start() previously
         release(false);
@@ -312,17 +399,47 @@ public class DailyyogaVideoView extends FrameLayout implements MediaController.M
             mMediaPlayer.setOnInfoListener(mInfoListener);
             mMediaPlayer.setOnBufferingUpdateListener(mBufferingUpdateListener);
             mMediaPlayer.setOnSeekCompleteListener(mSeekCompleteListener);
+            mMediaPlayer.setOnPlaylistTransitionListener(mPlaylistTransitionListener);
             mCurrentBufferPercentage = 0;
-            String scheme = mUri.getScheme();
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M &&
-                    mPVOptions.isUsingMediaDataSource() &&
+            mRangeDataSource = null;
+            Uri uri = resolveDownloadedUri(mUri);
+            String scheme = uri.getScheme();
+            if (mPlaylist != null) {
+                // a reopened player resumes at the item that was playing
+                mPlaylistOpenedAt = mPlaylistIndex;
+                List<Uri> uris = new ArrayList<>(mPlaylist.size() - mPlaylistOpenedAt);
+                for (Uri item : mPlaylist.subList(mPlaylistOpenedAt, mPlaylist.size())) {
+                    item = resolveDownloadedUri(item);
+                    if (mPVOptions.isUsingCacheProxy() && MediaCacheProxy.isProxyable(item.toString())) {
+                        item = Uri.parse(MediaCacheProxy.getInstance(mAppContext).getProxyUrl(item.toString(), mHeaders));
+                    }
+                    uris.add(item);
+                }
+                mMediaPlayer.setPlaylist(mAppContext, uris, mHeaders);
+            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M &&
+                    mPVOptions.isMediaDataSourceApplicable() &&
                     (TextUtils.isEmpty(scheme) || scheme.equalsIgnoreCase("file"))) {
-                IMediaDataSource dataSource = new FileMediaDataSource(new File(mUri.toString()));
+                // a bare path has no scheme, a downloaded file comes back as file://; other
+                // players get it through setDataSource(Context, Uri, Map) below
+                IMediaDataSource dataSource = createMediaDataSource(new File(uri.getPath()));
                 mMediaPlayer.setDataSource(dataSource);
+            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M &&
+                    mPVOptions.isMediaDataSourceApplicable() &&
+                    mPVOptions.getHttpRangeConnections() > 0 && !mRangeDataSourceFailed &&
+                    ("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))) {
+                int connections = mPVOptions.getHttpRangeConnections();
+                mRangeDataSource = new RangeHttpMediaDataSource(uri.toString(), mHeaders,
+                        connections, RangeHttpMediaDataSource.DEFAULT_CHUNK_SIZE,
+                        Math.max(connections, RangeHttpMediaDataSource.DEFAULT_CHUNKS_AHEAD));
+                mMediaPlayer.setDataSource(mRangeDataSource);
+            } else if (mPVOptions.isUsingCacheProxy() && MediaCacheProxy.isProxyable(uri.toString())) {
+                // upstream headers are kept by the proxy, the player only talks to localhost
+                String url = MediaCacheProxy.getInstance(mAppContext).getProxyUrl(uri.toString(), mHeaders);
+                mMediaPlayer.setDataSource(mAppContext, Uri.parse(url), null);
             } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
-                mMediaPlayer.setDataSource(mAppContext, mUri, mHeaders);
+                mMediaPlayer.setDataSource(mAppContext, uri, mHeaders);
             } else {
-                mMediaPlayer.setDataSource(mUri.toString());
+                mMediaPlayer.setDataSource(uri.toString());
             }
             bindSurfaceHolder(mMediaPlayer, mSurfaceHolder);
             mMediaPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
@@ -351,6 +468,31 @@ public class DailyyogaVideoView extends FrameLayout implements MediaController.M
         }
     }
 
+    private IMediaDataSource createMediaDataSource(File file) throws IOException {
+        IMediaDataSource dataSource;
+        switch (mPVOptions.getMediaDataSourceMode()) {
+            case PVOptions.MEDIA_DATA_SOURCE_MAPPED:
+                dataSource = new MappedMediaDataSource(file, mPVOptions.getMappedWindowSize(),
+                        MappedMediaDataSource.DEFAULT_MAX_WINDOWS);
+                break;
+            case PVOptions.MEDIA_DATA_SOURCE_FILE_CHANNEL:
+            default:
+                dataSource = new FileChannelMediaDataSource(file);
+                break;
+        }
+
+        if (mPVOptions.isUsingBlockCache()) {
+            dataSource = new CachedMediaDataSource(dataSource, MediaDataSourceBlockCache.sourceId(file));
+        }
+
+        int readAheadDepth = mPVOptions.getReadAheadDepth();
+        if (readAheadDepth > 0) {
+            dataSource = new ReadAheadMediaDataSource(dataSource, readAheadDepth,
+                    Math.min(readAheadDepth, ReadAheadMediaDataSource.DEFAULT_CHUNK_SIZE));
+        }
+        return dataSource;
+    }
+
     public void setMediaController(IMediaController controller) {
         if (mMediaController != null) {
             mMediaController.hide();
@@ -464,6 +606,27 @@ public class DailyyogaVideoView extends FrameLayout implements MediaController.M
         }
     };
 
+    // downloaded lessons are played from local storage, without touching the network
+    private Uri resolveDownloadedUri(Uri uri) {
+        String scheme = uri.getScheme();
+        if (!"http".equalsIgnoreCase(scheme) && !"https".equalsIgnoreCase(scheme))
+            return uri;
+
+        File file = DownloadManager.getInstance(mAppContext).getDownloadedFile(uri.toString());
+        return file != null ? Uri.fromFile(file) : uri;
+    }
+
+    private final IMediaPlayer.OnPlaylistTransitionListener mPlaylistTransitionListener = (mp, index) -> {
+        if (mPlaylist == null)
+            return;
+        mPlaylistIndex = mPlaylistOpenedAt + index;
+        mUri = mPlaylist.get(mPlaylistIndex);
+        Log.d(TAG, "playlist transition: " + mPlaylistIndex);
+        if (mOnPlaylistTransitionListener != null) {
+            mOnPlaylistTransitionListener.onPlaylistTransition(mMediaPlayer, mPlaylistIndex);
+        }
+    };
+
     private final IMediaPlayer.OnInfoListener mInfoListener = new IMediaPlayer.OnInfoListener() {
         @Override
         public boolean onInfo(IMediaPlayer mp, int arg1, int arg2) {
@@ -519,6 +682,13 @@ public class DailyyogaVideoView extends FrameLayout implements MediaController.M
         @Override
         public boolean onError(IMediaPlayer mp, int framework_err, int impl_err, Throwable t) {
             Log.d(TAG, "Error: " + framework_err + "," + impl_err);
+            if (mRangeDataSource != null && mRangeDataSource.isProbeFailed()) {
+                // e.g. the server ignores Range requests: retry once with the plain URI
+                Log.w(TAG, "range requests failed, reopening " + mUri + " without them");
+                mRangeDataSourceFailed = true;
+                openVideo();
+                return true;
+            }
             mCurrentState = STATE_ERROR;
             mTargetState = STATE_ERROR;
             if (mMediaController != null) {
@@ -568,6 +738,14 @@ public class DailyyogaVideoView extends FrameLayout implements MediaController.M
         mOnBufferingUpdateListener = onBufferingUpdateListener;
     }
 
+    /**
+     * @param l called with the absolute index into the list given to
+     *          {@link #setVideoPlaylist(List, Map)} when the next item starts playing
+     */
+    public void setOnPlaylistTransitionListener(IMediaPlayer.OnPlaylistTransitionListener l) {
+        mOnPlaylistTransitionListener = l;
+    }
+
     // REMOVED: mSHCallback
     private void bindSurfaceHolder(IMediaPlayer mp, IRenderView.ISurfaceHolder holder) {
         if (mp == null)
@@ -641,6 +819,8 @@ public class DailyyogaVideoView extends FrameLayout implements MediaController.M
      */
     public void release(boolean clearTargetState) {
         Log.d(TAG, "release()");
+        if (clearTargetState)
+            mOpenPendingNativeReady = false;
         if (mMediaPlayer != null) {
             mMediaPlayer.reset();
             mMediaPlayer.release();
@@ -777,11 +957,27 @@ public class DailyyogaVideoView extends FrameLayout implements MediaController.M
         return 0;
     }
 
+    /**
+     * Seeks with the backend's own precision, usually the key frame before {@code msec}; use
+     * {@link #seekTo(int, int)} with {@link IMediaPlayer#SEEK_EXACT} for an exact seek.
+     */
     @Override
     public void seekTo(int msec) {
+        seekTo(msec, SEEK_MODE_DEFAULT);
+    }
+
+    /**
+     * @param mode one of the {@code IMediaPlayer.SEEK_*} constants, e.g. a key frame seek while
+     *             the user scrubs
+     */
+    public void seekTo(int msec, int mode) {
         if (isInPlaybackState()) {
             mSeekStartTime = System.currentTimeMillis();
-            mMediaPlayer.seekTo(msec);
+            if (mode == SEEK_MODE_DEFAULT) {
+                mMediaPlayer.seekTo(msec);
+            } else {
+                mMediaPlayer.seekTo(msec, mode);
+            }
             mSeekWhenPrepared = 0;
         } else {
             mSeekWhenPrepared = msec;
@@ -884,7 +1080,13 @@ public class DailyyogaVideoView extends FrameLayout implements MediaController.M
 
         switch (playerType) {
             case PVOptions.PV_PLAYER_DAILYYOGA_EXO_MEDIA_PLAYER: {
+                // must be set before the first player opens the process wide cache
+                DemoUtil.setMaxCacheBytes(mPVOptions.getExoCacheMaxBytes());
                 DailyyogaExoMediaPlayer IjkExoMediaPlayer = new DailyyogaExoMediaPlayer(mAppContext);
+                IjkExoMediaPlayer.setBufferingProfile(mPVOptions.getBufferingProfile());
+                IjkExoMediaPlayer.setLeanPipeline(mPVOptions.isUsingLeanExoPipeline());
+                IjkExoMediaPlayer.setViewportSize(getWidth(), getHeight());
+                IjkExoMediaPlayer.setPlaybackStatsEnabled(mPVOptions.isUsingPlaybackStats());
                 mediaPlayer = IjkExoMediaPlayer;
             }
             break;
@@ -906,6 +1108,7 @@ public class DailyyogaVideoView extends FrameLayout implements MediaController.M
                     }
                     if (mPVOptions.isUsingMediaCodec()) {
                         ijkMediaPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "mediacodec", 1);
+                        IjkMediaPlayer.DefaultMediaCodecSelector.setCacheDirectory(mAppContext.getCacheDir());
                         if (mPVOptions.isUsingMediaCodecAutoRotate()) {
                             ijkMediaPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "mediacodec-auto-rotate", 1);
                         } else {
@@ -932,12 +1135,10 @@ public class DailyyogaVideoView extends FrameLayout implements MediaController.M
                     } else {
                         ijkMediaPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "overlay-format", pixelFormat);
                     }
-                    ijkMediaPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "framedrop", 1);
-                    ijkMediaPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "start-on-prepared", 0);
-
-                    ijkMediaPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_FORMAT, "http-detect-range-support", 0);
-
-                    ijkMediaPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_CODEC, "skip_loop_filter", 48);
+                    if (mPVOptions.isUsingAccurateSeek()) {
+                        ijkMediaPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "enable-accurate-seek", 1);
+                    }
+                    mPVOptions.getIjkOptionProfile().applyTo(ijkMediaPlayer);
                 }
                 mediaPlayer = ijkMediaPlayer;
             }
@@ -971,6 +1172,18 @@ public class DailyyogaVideoView extends FrameLayout implements MediaController.M
 
     public void enterBackground() {
         MediaPlayerService.setMediaPlayer(mMediaPlayer);
+        // nothing is on screen, keep only the audio going
+        if (mMediaPlayer != null)
+            mMediaPlayer.setAudioOnly(true);
+    }
+
+    /**
+     * Resumes video decoding after {@link #enterBackground()}, in sync with the audio and
+     * without re-preparing.
+     */
+    public void enterForeground() {
+        if (mMediaPlayer != null && mMediaPlayer.isAudioOnly())
+            mMediaPlayer.setAudioOnly(false);
     }
 
     public void stopBackgroundPlay() {
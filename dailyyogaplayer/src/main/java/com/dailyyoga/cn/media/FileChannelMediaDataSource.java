@@ -0,0 +1,61 @@
+package com.dailyyoga.cn.media;
+
+import com.dailyyoga.cn.media.misc.IMediaDataSource;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link IMediaDataSource} backed by {@link FileChannel} positional reads.
+ * <p>
+ * Unlike {@link FileMediaDataSource} there is no shared file pointer, so concurrent
+ * {@link #readAt(long, byte[], int, int)} calls (decoder + prefetcher) never race.
+ */
+public class FileChannelMediaDataSource implements IMediaDataSource {
+    private final FileInputStream mStream;
+    private final FileChannel mChannel;
+    private final long mFileSize;
+
+    public FileChannelMediaDataSource(File file) throws IOException {
+        mStream = new FileInputStream(file);
+        mChannel = mStream.getChannel();
+        mFileSize = mChannel.size();
+    }
+
+    @Override
+    public int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
+        return readAt(position, ByteBuffer.wrap(buffer, offset, size));
+    }
+
+    @Override
+    public int readAt(long position, ByteBuffer buffer) throws IOException {
+        if (!buffer.hasRemaining())
+            return 0;
+
+        if (position >= mFileSize)
+            return -1;
+
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = mChannel.read(buffer, position + total);
+            if (read < 0)
+                break;
+            total += read;
+        }
+        return total > 0 ? total : -1;
+    }
+
+    @Override
+    public long getSize() throws IOException {
+        return mFileSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mChannel.close();
+        mStream.close();
+    }
+}
@@ -41,7 +41,7 @@ public class FileMediaDataSource implements IMediaDataSource {
         if (size == 0)
             return 0;
 
-        return mFile.read(buffer, 0, size);
+        return mFile.read(buffer, offset, size);
     }
 
     @Override
@@ -0,0 +1,106 @@
+package com.dailyyoga.cn.media;
+
+import com.dailyyoga.cn.media.misc.IMediaDataSource;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link IMediaDataSource} serving reads from memory-mapped windows of a local file.
+ * <p>
+ * The file is mapped in fixed-size windows on demand and the most recently used
+ * windows are kept in an LRU, so reads become a memory copy instead of a syscall.
+ * Evicted windows are left to the GC to unmap.
+ */
+public class MappedMediaDataSource implements IMediaDataSource {
+    public static final int DEFAULT_WINDOW_SIZE = 8 * 1024 * 1024;
+    public static final int DEFAULT_MAX_WINDOWS = 4;
+
+    private final FileInputStream mStream;
+    private final FileChannel mChannel;
+    private final long mFileSize;
+    private final int mWindowSize;
+    private final LinkedHashMap<Long, MappedByteBuffer> mWindows;
+
+    public MappedMediaDataSource(File file) throws IOException {
+        this(file, DEFAULT_WINDOW_SIZE, DEFAULT_MAX_WINDOWS);
+    }
+
+    public MappedMediaDataSource(File file, int windowSize, final int maxWindows) throws IOException {
+        if (windowSize <= 0)
+            throw new IllegalArgumentException("invalid window size " + windowSize);
+        if (maxWindows <= 0)
+            throw new IllegalArgumentException("invalid max windows " + maxWindows);
+
+        mStream = new FileInputStream(file);
+        mChannel = mStream.getChannel();
+        mFileSize = mChannel.size();
+        mWindowSize = windowSize;
+        mWindows = new LinkedHashMap<Long, MappedByteBuffer>(maxWindows + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, MappedByteBuffer> eldest) {
+                return size() > maxWindows;
+            }
+        };
+    }
+
+    @Override
+    public int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
+        return readAt(position, ByteBuffer.wrap(buffer, offset, size));
+    }
+
+    @Override
+    public int readAt(long position, ByteBuffer buffer) throws IOException {
+        if (!buffer.hasRemaining())
+            return 0;
+
+        if (position >= mFileSize)
+            return -1;
+
+        int total = 0;
+        while (buffer.hasRemaining() && position + total < mFileSize) {
+            long current = position + total;
+            long windowIndex = current / mWindowSize;
+            ByteBuffer window = getWindow(windowIndex).duplicate();
+            window.position((int) (current - windowIndex * mWindowSize));
+            int count = Math.min(buffer.remaining(), window.remaining());
+            window.limit(window.position() + count);
+            buffer.put(window);
+            total += count;
+        }
+        return total;
+    }
+
+    private synchronized MappedByteBuffer getWindow(long windowIndex) throws IOException {
+        MappedByteBuffer window = mWindows.get(windowIndex);
+        if (window == null) {
+            long start = windowIndex * mWindowSize;
+            long length = Math.min(mWindowSize, mFileSize - start);
+            window = mChannel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            mWindows.put(windowIndex, window);
+        }
+        return window;
+    }
+
+    public int getWindowSize() {
+        return mWindowSize;
+    }
+
+    @Override
+    public long getSize() throws IOException {
+        return mFileSize;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mWindows.clear();
+        mChannel.close();
+        mStream.close();
+    }
+}
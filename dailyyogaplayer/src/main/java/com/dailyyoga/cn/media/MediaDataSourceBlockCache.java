@@ -0,0 +1,146 @@
+package com.dailyyoga.cn.media;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of fixed-size pages read through {@link CachedMediaDataSource}.
+ * <p>
+ * Pages are keyed by (source id, page index), so every player opening the same source
+ * shares them. The least recently used pages are evicted once the resident bytes exceed
+ * the memory budget.
+ */
+public class MediaDataSourceBlockCache {
+    public static final int DEFAULT_PAGE_SIZE = 64 * 1024;
+    public static final long DEFAULT_MEMORY_BUDGET = 16 * 1024 * 1024;
+
+    private static MediaDataSourceBlockCache sInstance;
+
+    private final int mPageSize;
+    private final LinkedHashMap<PageKey, byte[]> mPages = new LinkedHashMap<>(64, 0.75f, true);
+    private long mMemoryBudget;
+    private long mResidentBytes;
+    private long mHitCount;
+    private long mMissCount;
+
+    public static synchronized MediaDataSourceBlockCache getInstance() {
+        if (sInstance == null)
+            sInstance = new MediaDataSourceBlockCache(DEFAULT_PAGE_SIZE, DEFAULT_MEMORY_BUDGET);
+        return sInstance;
+    }
+
+    public MediaDataSourceBlockCache(int pageSize, long memoryBudget) {
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("invalid page size " + pageSize);
+
+        mPageSize = pageSize;
+        mMemoryBudget = memoryBudget;
+    }
+
+    /**
+     * Builds a source id that changes whenever the file is replaced or modified.
+     */
+    public static String sourceId(File file) throws IOException {
+        return file.getCanonicalPath() + ":" + file.length() + ":" + file.lastModified();
+    }
+
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    public synchronized byte[] get(String sourceId, long pageIndex) {
+        byte[] page = mPages.get(new PageKey(sourceId, pageIndex));
+        if (page != null) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+        }
+        return page;
+    }
+
+    public synchronized void put(String sourceId, long pageIndex, byte[] page) {
+        byte[] previous = mPages.put(new PageKey(sourceId, pageIndex), page);
+        if (previous != null)
+            mResidentBytes -= previous.length;
+        mResidentBytes += page.length;
+        trimToBudget();
+    }
+
+    public synchronized void invalidate(String sourceId) {
+        Iterator<Map.Entry<PageKey, byte[]>> iterator = mPages.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<PageKey, byte[]> entry = iterator.next();
+            if (entry.getKey().mSourceId.equals(sourceId)) {
+                mResidentBytes -= entry.getValue().length;
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        mPages.clear();
+        mResidentBytes = 0;
+    }
+
+    public synchronized void setMemoryBudget(long memoryBudget) {
+        mMemoryBudget = memoryBudget;
+        trimToBudget();
+    }
+
+    public synchronized long getMemoryBudget() {
+        return mMemoryBudget;
+    }
+
+    public synchronized long getResidentBytes() {
+        return mResidentBytes;
+    }
+
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized float getHitRatio() {
+        long total = mHitCount + mMissCount;
+        return total == 0 ? 0f : (float) mHitCount / total;
+    }
+
+    private void trimToBudget() {
+        Iterator<Map.Entry<PageKey, byte[]>> iterator = mPages.entrySet().iterator();
+        while (mResidentBytes > mMemoryBudget && iterator.hasNext()) {
+            mResidentBytes -= iterator.next().getValue().length;
+            iterator.remove();
+        }
+    }
+
+    private static final class PageKey {
+        private final String mSourceId;
+        private final long mPageIndex;
+
+        PageKey(String sourceId, long pageIndex) {
+            mSourceId = sourceId;
+            mPageIndex = pageIndex;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof PageKey))
+                return false;
+            PageKey other = (PageKey) o;
+            return mPageIndex == other.mPageIndex && mSourceId.equals(other.mSourceId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * mSourceId.hashCode() + (int) (mPageIndex ^ (mPageIndex >>> 32));
+        }
+    }
+}
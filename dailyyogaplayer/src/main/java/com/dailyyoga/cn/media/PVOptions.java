@@ -21,6 +21,10 @@ import android.content.Context;
 
 import androidx.annotation.NonNull;
 
+import com.dailyyoga.cn.media.exo.demo.player.BufferingProfile;
+
+import tv.danmaku.ijk.media.player.IjkOptionProfile;
+
 import static com.dailyyoga.cn.media.IRenderView.AR_ASPECT_FIT_PARENT;
 
 public class PVOptions {
@@ -33,6 +37,14 @@ public class PVOptions {
     public static final int RENDER_TEXTURE_VIEW = 1;
     public static final int RENDER_NONE = 2;
 
+    public static final int MEDIA_DATA_SOURCE_FILE_CHANNEL = 0;
+    public static final int MEDIA_DATA_SOURCE_MAPPED = 1;
+
+    public static final int BUFFERING_PROFILE_BALANCED = BufferingProfile.BALANCED;
+    public static final int BUFFERING_PROFILE_FAST_START = BufferingProfile.FAST_START;
+    public static final int BUFFERING_PROFILE_LOW_MEMORY = BufferingProfile.LOW_MEMORY;
+    public static final int BUFFERING_PROFILE_REBUFFER_AVERSE = BufferingProfile.REBUFFER_AVERSE;
+
     private boolean enableBackgroundPlay;
     private int player = PV_PLAYER_ANDROID_MEDIA_PLAYER;
     private int render = RENDER_SURFACE_VIEW;
@@ -45,6 +57,18 @@ public class PVOptions {
     private boolean usingOpenSLES;
     private String pixelFormat;
     private boolean usingMediaDataSource;
+    private int mediaDataSourceMode = MEDIA_DATA_SOURCE_FILE_CHANNEL;
+    private int mappedWindowSize = MappedMediaDataSource.DEFAULT_WINDOW_SIZE;
+    private int readAheadDepth;
+    private boolean usingBlockCache;
+    private int httpRangeConnections;
+    private boolean usingCacheProxy;
+    private long exoCacheMaxBytes;
+    private int bufferingProfile = BUFFERING_PROFILE_BALANCED;
+    private boolean usingLeanExoPipeline;
+    private boolean usingAccurateSeek;
+    private boolean usingPlaybackStats;
+    private IjkOptionProfile ijkOptionProfile = IjkOptionProfile.DEFAULT;
     private String lastDirectory;
 
     public PVOptions() {
@@ -138,6 +162,145 @@ public class PVOptions {
         this.usingMediaDataSource = usingMediaDataSource;
     }
 
+    /**
+     * @return whether media data sources are on and the selected player accepts them; Exo only
+     *         takes URIs and reads files and http(s) through its own data sources
+     */
+    public boolean isMediaDataSourceApplicable() {
+        return usingMediaDataSource && player != PV_PLAYER_DAILYYOGA_EXO_MEDIA_PLAYER;
+    }
+
+    public int getMediaDataSourceMode() {
+        return mediaDataSourceMode;
+    }
+
+    public void setMediaDataSourceMode(int mediaDataSourceMode) {
+        this.mediaDataSourceMode = mediaDataSourceMode;
+    }
+
+    public int getMappedWindowSize() {
+        return mappedWindowSize;
+    }
+
+    public void setMappedWindowSize(int mappedWindowSize) {
+        this.mappedWindowSize = mappedWindowSize;
+    }
+
+    public int getReadAheadDepth() {
+        return readAheadDepth;
+    }
+
+    /**
+     * @param readAheadDepth bytes buffered ahead of sequential reads, 0 disables read-ahead
+     */
+    public void setReadAheadDepth(int readAheadDepth) {
+        this.readAheadDepth = readAheadDepth;
+    }
+
+    public boolean isUsingBlockCache() {
+        return usingBlockCache;
+    }
+
+    public void setUsingBlockCache(boolean usingBlockCache) {
+        this.usingBlockCache = usingBlockCache;
+    }
+
+    public int getHttpRangeConnections() {
+        return httpRangeConnections;
+    }
+
+    /**
+     * @param httpRangeConnections parallel Range connections used for http(s) media data
+     *                             sources, 0 keeps the backend's own network stack
+     */
+    public void setHttpRangeConnections(int httpRangeConnections) {
+        this.httpRangeConnections = httpRangeConnections;
+    }
+
+    public boolean isUsingCacheProxy() {
+        return usingCacheProxy;
+    }
+
+    /**
+     * @param usingCacheProxy route progressive http(s) media of every backend through
+     *                        {@link com.dailyyoga.cn.media.proxy.MediaCacheProxy}
+     */
+    public void setUsingCacheProxy(boolean usingCacheProxy) {
+        this.usingCacheProxy = usingCacheProxy;
+    }
+
+    public long getExoCacheMaxBytes() {
+        return exoCacheMaxBytes;
+    }
+
+    /**
+     * @param exoCacheMaxBytes disk budget of the Exo cache, 0 derives it from the free space
+     */
+    public void setExoCacheMaxBytes(long exoCacheMaxBytes) {
+        this.exoCacheMaxBytes = exoCacheMaxBytes;
+    }
+
+    public int getBufferingProfile() {
+        return bufferingProfile;
+    }
+
+    /**
+     * @param bufferingProfile one of the BUFFERING_PROFILE_* constants, used by the Exo backend
+     */
+    public void setBufferingProfile(int bufferingProfile) {
+        this.bufferingProfile = bufferingProfile;
+    }
+
+    public boolean isUsingLeanExoPipeline() {
+        return usingLeanExoPipeline;
+    }
+
+    /**
+     * @param usingLeanExoPipeline Exo backend registers only the MP4 extractors and the
+     *                             video/audio renderers, falling back to the full set for
+     *                             unrecognized media
+     */
+    public void setUsingLeanExoPipeline(boolean usingLeanExoPipeline) {
+        this.usingLeanExoPipeline = usingLeanExoPipeline;
+    }
+
+    public boolean isUsingAccurateSeek() {
+        return usingAccurateSeek;
+    }
+
+    /**
+     * @param usingAccurateSeek ijk backend decodes up to the exact position on every seek;
+     *                          other backends pick the precision per seek
+     */
+    public void setUsingAccurateSeek(boolean usingAccurateSeek) {
+        this.usingAccurateSeek = usingAccurateSeek;
+    }
+
+    public boolean isUsingPlaybackStats() {
+        return usingPlaybackStats;
+    }
+
+    /**
+     * @param usingPlaybackStats Exo backend aggregates startup latency, rebuffers, dropped frames
+     *                           and bitrate switches per session
+     */
+    public void setUsingPlaybackStats(boolean usingPlaybackStats) {
+        this.usingPlaybackStats = usingPlaybackStats;
+    }
+
+    @NonNull
+    public IjkOptionProfile getIjkOptionProfile() {
+        return ijkOptionProfile;
+    }
+
+    /**
+     * @param ijkOptionProfile tuning options of the ijk backend, e.g. {@link IjkOptionProfile#FAST_START};
+     *                         null restores {@link IjkOptionProfile#DEFAULT}
+     */
+    public void setIjkOptionProfile(IjkOptionProfile ijkOptionProfile) {
+        this.ijkOptionProfile = ijkOptionProfile != null ? ijkOptionProfile : IjkOptionProfile.DEFAULT;
+    }
+
     public String getLastDirectory() {
         return lastDirectory;
     }
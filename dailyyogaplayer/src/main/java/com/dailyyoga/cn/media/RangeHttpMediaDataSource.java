@@ -0,0 +1,351 @@
+package com.dailyyoga.cn.media;
+
+import com.dailyyoga.cn.media.misc.IMediaDataSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link IMediaDataSource} fetching a progressive HTTP resource with Range requests over
+ * several parallel connections.
+ * <p>
+ * The resource is split into fixed-size chunks kept in a shared chunk map. Idle connections
+ * always pick the first missing chunk at or after the current read position, so the chunk
+ * under the reader is fetched first and the following ones are fetched in parallel. Reads
+ * are served as soon as the bytes they need have arrived. Chunks outside the window around
+ * the read position are dropped to bound memory.
+ * <p>
+ * A chunk that still fails after {@value #MAX_RETRIES} attempts fails the reads waiting for it,
+ * and is fetched again by the next read, so a network blip does not kill the source. When the
+ * size probe fails, for example because the server ignores Range requests and answers 200,
+ * {@link #getSize()} throws and {@link #isProbeFailed()} tells the caller to play the plain
+ * URI instead.
+ */
+public class RangeHttpMediaDataSource implements IMediaDataSource {
+    public static final int DEFAULT_CONNECTIONS = 3;
+    public static final int DEFAULT_CHUNK_SIZE = 512 * 1024;
+    public static final int DEFAULT_CHUNKS_AHEAD = 8;
+    private static final int CHUNKS_BEHIND = 2;
+    private static final int MAX_RETRIES = 3;
+    private static final int RETRY_DELAY_MS = 500;
+    private static final int CONNECT_TIMEOUT_MS = 8000;
+    private static final int READ_TIMEOUT_MS = 8000;
+
+    private final String mUrl;
+    private final Map<String, String> mHeaders;
+    private final int mConnections;
+    private final int mChunkSize;
+    private final int mChunksAhead;
+
+    // guarded by this
+    private final Map<Long, Chunk> mChunks = new LinkedHashMap<>();
+    private final Set<HttpURLConnection> mActiveConnections = new HashSet<>();
+    private Thread[] mWorkers;
+    private long mSize = -1;
+    private long mReadChunk;
+    private boolean mClosed;
+    private volatile boolean mProbeFailed;
+
+    public RangeHttpMediaDataSource(String url, Map<String, String> headers) {
+        this(url, headers, DEFAULT_CONNECTIONS, DEFAULT_CHUNK_SIZE, DEFAULT_CHUNKS_AHEAD);
+    }
+
+    public RangeHttpMediaDataSource(String url, Map<String, String> headers, int connections,
+                                    int chunkSize, int chunksAhead) {
+        if (connections <= 0 || chunkSize <= 0 || chunksAhead < connections)
+            throw new IllegalArgumentException("invalid connections " + connections
+                    + ", chunk size " + chunkSize + " or chunks ahead " + chunksAhead);
+
+        mUrl = url;
+        mHeaders = headers;
+        mConnections = connections;
+        mChunkSize = chunkSize;
+        mChunksAhead = chunksAhead;
+    }
+
+    @Override
+    public int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
+        if (size == 0)
+            return 0;
+
+        long length = getSize();
+        if (position >= length)
+            return -1;
+
+        long chunkIndex = position / mChunkSize;
+        int chunkOffset = (int) (position - chunkIndex * mChunkSize);
+        synchronized (this) {
+            if (mReadChunk != chunkIndex) {
+                mReadChunk = chunkIndex;
+                trimChunks();
+                notifyAll();
+            }
+
+            while (true) {
+                if (mClosed)
+                    throw new IOException("closed");
+
+                Chunk chunk = mChunks.get(chunkIndex);
+                if (chunk != null && chunk.mError != null && chunk.mFilled <= chunkOffset) {
+                    // report the failure once, the next read fetches the chunk again
+                    IOException error = chunk.mError;
+                    mChunks.remove(chunkIndex);
+                    notifyAll();
+                    throw error;
+                }
+                if (chunk != null && chunk.mFilled > chunkOffset) {
+                    int count = Math.min(size, chunk.mFilled - chunkOffset);
+                    System.arraycopy(chunk.mData, chunkOffset, buffer, offset, count);
+                    return count;
+                }
+
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public long getSize() throws IOException {
+        synchronized (this) {
+            if (mSize >= 0)
+                return mSize;
+        }
+
+        long size;
+        try {
+            size = probeSize();
+        } catch (IOException e) {
+            mProbeFailed = true;
+            throw e;
+        }
+        synchronized (this) {
+            if (mSize < 0) {
+                mSize = size;
+                startWorkers();
+            }
+            return mSize;
+        }
+    }
+
+    /**
+     * @return whether the size probe failed, the source can't serve any byte then
+     */
+    public boolean isProbeFailed() {
+        return mProbeFailed;
+    }
+
+    private long probeSize() throws IOException {
+        HttpURLConnection connection = openConnection(0, 0);
+        try {
+            int code = connection.getResponseCode();
+            if (code == HttpURLConnection.HTTP_PARTIAL) {
+                String contentRange = connection.getHeaderField("Content-Range");
+                int slash = contentRange == null ? -1 : contentRange.lastIndexOf('/');
+                if (slash >= 0) {
+                    try {
+                        return Long.parseLong(contentRange.substring(slash + 1).trim());
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+            }
+            throw new IOException("range requests not supported: HTTP " + code + " for " + mUrl);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private HttpURLConnection openConnection(long start, long end) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(mUrl).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        connection.setRequestProperty("Accept-Encoding", "identity");
+        if (mHeaders != null) {
+            for (Map.Entry<String, String> entry : mHeaders.entrySet()) {
+                connection.setRequestProperty(entry.getKey(), entry.getValue());
+            }
+        }
+        connection.setRequestProperty("Range", "bytes=" + start + "-" + end);
+        return connection;
+    }
+
+    private void startWorkers() {
+        mWorkers = new Thread[mConnections];
+        for (int i = 0; i < mConnections; i++) {
+            mWorkers[i] = new Thread(this::workerLoop, "RangeHttpMediaDataSource-" + i);
+            mWorkers[i].setDaemon(true);
+            mWorkers[i].start();
+        }
+    }
+
+    private void workerLoop() {
+        while (true) {
+            Chunk chunk;
+            synchronized (this) {
+                while (true) {
+                    if (mClosed)
+                        return;
+
+                    chunk = nextChunkToFetch();
+                    if (chunk != null)
+                        break;
+
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                chunk.mLoading = true;
+                mChunks.put(chunk.mIndex, chunk);
+            }
+
+            try {
+                fetch(chunk);
+            } catch (IOException e) {
+                int retries;
+                synchronized (this) {
+                    retries = ++chunk.mRetries;
+                    if (retries >= MAX_RETRIES) {
+                        // kept until a reader picks the error up, bytes already filled stay readable
+                        chunk.mLoading = false;
+                        chunk.mError = e;
+                    } else {
+                        // restart the chunk from scratch, still marked loading so the other
+                        // connections don't burn its retries during the backoff
+                        chunk.mFilled = 0;
+                    }
+                    notifyAll();
+                }
+                if (retries < MAX_RETRIES) {
+                    try {
+                        Thread.sleep((long) RETRY_DELAY_MS * retries);
+                    } catch (InterruptedException interrupted) {
+                        return;
+                    } finally {
+                        synchronized (this) {
+                            chunk.mLoading = false;
+                            notifyAll();
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                // close() disconnecting a connection mid-request can surface as a runtime exception
+                synchronized (this) {
+                    if (!mClosed)
+                        throw e;
+                }
+                return;
+            }
+        }
+    }
+
+    // must hold this
+    private Chunk nextChunkToFetch() {
+        if (mSize <= 0)
+            return null;
+
+        long lastChunk = (mSize - 1) / mChunkSize;
+        long end = Math.min(lastChunk, mReadChunk + mChunksAhead - 1);
+        for (long index = mReadChunk; index <= end; index++) {
+            Chunk chunk = mChunks.get(index);
+            if (chunk == null) {
+                int length = (int) Math.min(mChunkSize, mSize - index * mChunkSize);
+                return new Chunk(index, length);
+            }
+            if (!chunk.mLoading && chunk.mError == null && chunk.mFilled < chunk.mData.length)
+                return chunk;
+        }
+        return null;
+    }
+
+    private void fetch(Chunk chunk) throws IOException {
+        long start = chunk.mIndex * mChunkSize;
+        HttpURLConnection connection = openConnection(start, start + chunk.mData.length - 1);
+        synchronized (this) {
+            if (mClosed)
+                return;
+            mActiveConnections.add(connection);
+        }
+        try {
+            int code = connection.getResponseCode();
+            if (code != HttpURLConnection.HTTP_PARTIAL)
+                throw new IOException("unexpected HTTP " + code + " for range at " + start);
+
+            InputStream in = connection.getInputStream();
+            byte[] buffer = new byte[16 * 1024];
+            int filled = 0;
+            while (filled < chunk.mData.length) {
+                int read = in.read(buffer, 0, Math.min(buffer.length, chunk.mData.length - filled));
+                if (read < 0)
+                    throw new IOException("unexpected end of stream at " + (start + filled));
+
+                synchronized (this) {
+                    if (mClosed || mChunks.get(chunk.mIndex) != chunk)
+                        return;
+                    System.arraycopy(buffer, 0, chunk.mData, filled, read);
+                    filled += read;
+                    chunk.mFilled = filled;
+                    notifyAll();
+                }
+            }
+            synchronized (this) {
+                chunk.mLoading = false;
+                notifyAll();
+            }
+        } finally {
+            synchronized (this) {
+                mActiveConnections.remove(connection);
+            }
+            connection.disconnect();
+        }
+    }
+
+    // must hold this
+    private void trimChunks() {
+        Iterator<Map.Entry<Long, Chunk>> iterator = mChunks.entrySet().iterator();
+        while (iterator.hasNext()) {
+            long index = iterator.next().getKey();
+            if (index < mReadChunk - CHUNKS_BEHIND || index >= mReadChunk + mChunksAhead)
+                iterator.remove();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            mClosed = true;
+            mChunks.clear();
+            for (HttpURLConnection connection : mActiveConnections) {
+                connection.disconnect();
+            }
+            mActiveConnections.clear();
+            notifyAll();
+        }
+    }
+
+    private static final class Chunk {
+        final long mIndex;
+        final byte[] mData;
+        int mFilled;
+        int mRetries;
+        boolean mLoading;
+        IOException mError;
+
+        Chunk(long index, int length) {
+            mIndex = index;
+            mData = new byte[length];
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.dailyyoga.cn.media;
+
+import com.dailyyoga.cn.media.misc.IMediaDataSource;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decorator that reads ahead of a sequential consumer into a bounded ring buffer.
+ * <p>
+ * Sequential access is detected from consecutive {@link #readAt(long, byte[], int, int)} calls;
+ * once detected a background thread keeps up to {@code depth} bytes buffered past the last
+ * read position. A random seek drops the buffer and stops read-ahead until the access
+ * pattern is sequential again. Upstream reads are serialized, so the wrapped source does not
+ * need to be thread-safe.
+ */
+public class ReadAheadMediaDataSource implements IMediaDataSource {
+    public static final int DEFAULT_DEPTH = 2 * 1024 * 1024;
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    private static final int SEQUENTIAL_THRESHOLD = 2;
+
+    private final IMediaDataSource mUpstream;
+    private final Object mUpstreamLock = new Object();
+    private final byte[] mRing;
+    private final byte[] mChunk;
+
+    // guarded by this
+    private long mWindowStart;
+    private int mWindowHead;
+    private int mWindowLength;
+    private long mNextExpected = -1;
+    private int mSequentialCount;
+    private boolean mReadAhead;
+    private boolean mEndOfStream;
+    private int mGeneration;
+    private boolean mClosed;
+    private Thread mThread;
+
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+
+    public ReadAheadMediaDataSource(IMediaDataSource upstream) {
+        this(upstream, DEFAULT_DEPTH, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ReadAheadMediaDataSource(IMediaDataSource upstream, int depth, int chunkSize) {
+        if (depth <= 0 || chunkSize <= 0 || chunkSize > depth)
+            throw new IllegalArgumentException("invalid depth " + depth + " or chunk size " + chunkSize);
+
+        mUpstream = upstream;
+        mRing = new byte[depth];
+        mChunk = new byte[chunkSize];
+    }
+
+    @Override
+    public int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
+        if (size == 0)
+            return 0;
+
+        synchronized (this) {
+            if (mClosed)
+                throw new IOException("closed");
+
+            updateAccessPattern(position);
+            // the reader thread is fetching exactly this range; wait for it instead of racing it
+            int generation = mGeneration;
+            while (mReadAhead && !mEndOfStream && !mClosed && generation == mGeneration
+                    && position == mWindowStart + mWindowLength) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+
+            if (position >= mWindowStart && position < mWindowStart + mWindowLength) {
+                int count = (int) Math.min(size, mWindowStart + mWindowLength - position);
+                copyFromRing(position, buffer, offset, count);
+                consumeUpTo(position + count);
+                mNextExpected = position + count;
+                mHitCount.incrementAndGet();
+                notifyAll();
+                return count;
+            }
+        }
+
+        mMissCount.incrementAndGet();
+        int read;
+        synchronized (mUpstreamLock) {
+            read = mUpstream.readAt(position, buffer, offset, size);
+        }
+
+        synchronized (this) {
+            mNextExpected = position + Math.max(read, 0);
+            if (mReadAhead && mWindowLength == 0) {
+                mWindowStart = mNextExpected;
+                mEndOfStream = read < 0;
+            }
+            notifyAll();
+        }
+        return read;
+    }
+
+    private void updateAccessPattern(long position) {
+        boolean buffered = position >= mWindowStart && position < mWindowStart + mWindowLength;
+        if (position == mNextExpected || buffered) {
+            if (mSequentialCount < SEQUENTIAL_THRESHOLD)
+                mSequentialCount++;
+            if (mSequentialCount >= SEQUENTIAL_THRESHOLD && !mReadAhead) {
+                mReadAhead = true;
+                resetWindow(position);
+                startReaderIfNeeded();
+            }
+        } else {
+            mSequentialCount = 0;
+            mReadAhead = false;
+            resetWindow(position);
+        }
+    }
+
+    private void resetWindow(long position) {
+        mWindowStart = position;
+        mWindowHead = 0;
+        mWindowLength = 0;
+        mEndOfStream = false;
+        mGeneration++;
+        notifyAll();
+    }
+
+    private void consumeUpTo(long position) {
+        int consumed = (int) (position - mWindowStart);
+        mWindowHead = (mWindowHead + consumed) % mRing.length;
+        mWindowLength -= consumed;
+        mWindowStart = position;
+    }
+
+    private void copyFromRing(long position, byte[] buffer, int offset, int count) {
+        int start = (mWindowHead + (int) (position - mWindowStart)) % mRing.length;
+        int first = Math.min(count, mRing.length - start);
+        System.arraycopy(mRing, start, buffer, offset, first);
+        if (first < count)
+            System.arraycopy(mRing, 0, buffer, offset + first, count - first);
+    }
+
+    private void copyToRing(byte[] source, int count) {
+        int start = (mWindowHead + mWindowLength) % mRing.length;
+        int first = Math.min(count, mRing.length - start);
+        System.arraycopy(source, 0, mRing, start, first);
+        if (first < count)
+            System.arraycopy(source, first, mRing, 0, count - first);
+        mWindowLength += count;
+    }
+
+    private void startReaderIfNeeded() {
+        if (mThread != null)
+            return;
+
+        mThread = new Thread(this::readLoop, "ReadAheadMediaDataSource");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    private void readLoop() {
+        while (true) {
+            long fillPosition;
+            int generation;
+            int toRead;
+            synchronized (this) {
+                while (!mClosed && (!mReadAhead || mEndOfStream || mWindowLength == mRing.length)) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (mClosed)
+                    return;
+
+                fillPosition = mWindowStart + mWindowLength;
+                generation = mGeneration;
+                toRead = Math.min(mChunk.length, mRing.length - mWindowLength);
+            }
+
+            int read;
+            try {
+                synchronized (mUpstreamLock) {
+                    read = mUpstream.readAt(fillPosition, mChunk, 0, toRead);
+                }
+            } catch (IOException e) {
+                read = -1;
+            }
+
+            synchronized (this) {
+                if (generation != mGeneration || fillPosition != mWindowStart + mWindowLength)
+                    continue;
+
+                if (read <= 0) {
+                    mEndOfStream = true;
+                } else {
+                    copyToRing(mChunk, read);
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    public int getDepth() {
+        return mRing.length;
+    }
+
+    @Override
+    public long getSize() throws IOException {
+        return mUpstream.getSize();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            mClosed = true;
+            notifyAll();
+        }
+        synchronized (mUpstreamLock) {
+            mUpstream.close();
+        }
+    }
+}
@@ -0,0 +1,495 @@
+package com.dailyyoga.cn.media.download;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads lessons for offline playback into {@code files/offline}, apart from the streaming
+ * caches, so cache eviction never removes them.
+ * <p>
+ * Downloads run on a small worker pool, highest priority first and in submission order within a
+ * priority. Data is written to a {@code .part} file that an interrupted or paused download resumes
+ * from with a Range request; once complete it is checked against the expected checksum, if given,
+ * and renamed into place. Listeners are called on the main thread.
+ * <p>
+ * {@link #getDownloadedFile(String)} is a single file lookup, cheap enough to call before every
+ * playback.
+ */
+public class DownloadManager {
+    private static final String TAG = "DownloadManager";
+
+    public static final int PRIORITY_LOW = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_HIGH = 2;
+
+    private static final String DOWNLOAD_DIRECTORY = "offline";
+    private static final String PART_SUFFIX = ".part";
+    private static final int THREAD_COUNT = 2;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    private static final int CONNECT_TIMEOUT_MS = 8000;
+    private static final int READ_TIMEOUT_MS = 8000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_RETRIES = 3;
+    private static final long PROGRESS_INTERVAL_MS = 500;
+
+    public interface Listener {
+        void onProgress(String url, long downloadedBytes, long totalBytes);
+
+        void onCompleted(String url, File file);
+
+        /**
+         * @param e {@link ChecksumException} when the data did not match, the partial data is
+         *          discarded in that case
+         */
+        void onFailed(String url, Exception e);
+    }
+
+    public static class ChecksumException extends IOException {
+        public ChecksumException(String message) {
+            super(message);
+        }
+    }
+
+    private static DownloadManager sInstance;
+
+    private final File mDirectory;
+    private final ThreadPoolExecutor mExecutor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final CopyOnWriteArrayList<Listener> mListeners = new CopyOnWriteArrayList<>();
+    private final AtomicInteger mSequence = new AtomicInteger();
+    // guarded by this
+    private final Map<String, Task> mTasks = new HashMap<>();
+    // paused tasks that may still be writing their .part file, guarded by this
+    private final Map<String, Task> mStoppingTasks = new HashMap<>();
+
+    public static synchronized DownloadManager getInstance(Context context) {
+        if (sInstance == null)
+            sInstance = new DownloadManager(new File(context.getApplicationContext().getFilesDir(), DOWNLOAD_DIRECTORY));
+        return sInstance;
+    }
+
+    public DownloadManager(File directory) {
+        mDirectory = directory;
+        mExecutor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, TAG);
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Queues {@code url} for download; a URL that is already downloaded or downloading is left
+     * alone, a queued one takes the higher of both priorities. A download paused while running
+     * resumes only once the paused task has stopped writing.
+     *
+     * @param checksum hex MD5, SHA-1 or SHA-256 of the content, picked by length, or null to skip
+     *                 verification
+     */
+    public synchronized void download(String url, Map<String, String> headers, String checksum, int priority) {
+        if (getDownloadedFile(url) != null)
+            return;
+
+        String key = keyOf(url);
+        Task task = mTasks.get(key);
+        if (task != null && !task.mStarted) {
+            // may already be dequeued, cancelling keeps it from starting
+            task.cancel();
+            mExecutor.remove(task);
+            mTasks.remove(key);
+            priority = Math.max(priority, task.mPriority);
+        } else if (task != null) {
+            return;
+        }
+
+        task = new Task(url, key, headers, checksum, priority, mSequence.getAndIncrement(),
+                mStoppingTasks.get(key));
+        mTasks.put(key, task);
+        mExecutor.execute(task);
+    }
+
+    /** Queues every lesson of a course at {@code priority}, in list order. */
+    public void download(List<String> urls, Map<String, String> headers, int priority) {
+        for (String url : urls) {
+            download(url, headers, null, priority);
+        }
+    }
+
+    /** Stops the download of {@code url}, keeping the data fetched so far for a later resume. */
+    public synchronized void pause(String url) {
+        String key = keyOf(url);
+        Task task = mTasks.remove(key);
+        if (task != null) {
+            task.cancel();
+            mExecutor.remove(task);
+            if (task.mStarted)
+                mStoppingTasks.put(key, task);
+        }
+    }
+
+    /** Stops the download of {@code url} if running and deletes its data. */
+    public void remove(String url) {
+        pause(url);
+        String key = keyOf(url);
+        deleteFile(new File(mDirectory, key));
+        deleteFile(new File(mDirectory, key + PART_SUFFIX));
+    }
+
+    public synchronized boolean isDownloading(String url) {
+        return mTasks.containsKey(keyOf(url));
+    }
+
+    /**
+     * @return the complete local copy of {@code url}, or null if it is not downloaded
+     */
+    public File getDownloadedFile(String url) {
+        if (url == null)
+            return null;
+
+        File file = new File(mDirectory, keyOf(url));
+        return file.isFile() ? file : null;
+    }
+
+    /**
+     * @return bytes of {@code url} on disk, complete or not
+     */
+    public long getDownloadedBytes(String url) {
+        String key = keyOf(url);
+        File file = new File(mDirectory, key);
+        if (file.isFile())
+            return file.length();
+        return new File(mDirectory, key + PART_SUFFIX).length();
+    }
+
+    public long getStorageSize() {
+        long total = 0;
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                total += file.length();
+            }
+        }
+        return total;
+    }
+
+    private synchronized void onTaskFinished(Task task) {
+        if (mTasks.get(task.mKey) == task)
+            mTasks.remove(task.mKey);
+        if (mStoppingTasks.get(task.mKey) == task)
+            mStoppingTasks.remove(task.mKey);
+    }
+
+    private void postProgress(final String url, final long downloaded, final long total) {
+        mMainHandler.post(() -> {
+            for (Listener listener : mListeners) {
+                listener.onProgress(url, downloaded, total);
+            }
+        });
+    }
+
+    private void postCompleted(final String url, final File file) {
+        mMainHandler.post(() -> {
+            for (Listener listener : mListeners) {
+                listener.onCompleted(url, file);
+            }
+        });
+    }
+
+    private void postFailed(final String url, final Exception e) {
+        mMainHandler.post(() -> {
+            for (Listener listener : mListeners) {
+                listener.onFailed(url, e);
+            }
+        });
+    }
+
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete())
+            Log.w(TAG, "unable to delete " + file);
+    }
+
+    private static MessageDigest newDigest(String checksum) throws IOException {
+        String algorithm;
+        switch (checksum.length()) {
+            case 32:
+                algorithm = "MD5";
+                break;
+            case 40:
+                algorithm = "SHA-1";
+                break;
+            case 64:
+                algorithm = "SHA-256";
+                break;
+            default:
+                throw new IOException("unknown checksum: " + checksum);
+        }
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+            builder.append(Character.forDigit(b & 0xf, 16));
+        }
+        return builder.toString();
+    }
+
+    private static String keyOf(String url) {
+        try {
+            return toHex(MessageDigest.getInstance("MD5").digest(url.getBytes("UTF-8")));
+        } catch (NoSuchAlgorithmException | IOException e) {
+            return Integer.toHexString(url.hashCode());
+        }
+    }
+
+    private static long parseLong(String value) {
+        if (value == null)
+            return -1;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private final class Task implements Runnable, Comparable<Task> {
+        final String mUrl;
+        final String mKey;
+        final Map<String, String> mHeaders;
+        final String mChecksum;
+        final int mPriority;
+        final int mOrder;
+        // a paused task of the same url that may still be writing the .part file
+        final Task mPredecessor;
+        final CountDownLatch mFinished = new CountDownLatch(1);
+        // guarded by DownloadManager.this
+        boolean mStarted;
+        volatile boolean mCancelled;
+        volatile HttpURLConnection mConnection;
+        long mLastProgressTime;
+
+        Task(String url, String key, Map<String, String> headers, String checksum, int priority, int order,
+             Task predecessor) {
+            mUrl = url;
+            mKey = key;
+            mHeaders = headers;
+            mChecksum = checksum != null ? checksum.toLowerCase(Locale.US) : null;
+            mPriority = priority;
+            mOrder = order;
+            mPredecessor = predecessor;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (mPredecessor != null)
+                    mPredecessor.mFinished.await();
+                download();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                mFinished.countDown();
+            }
+        }
+
+        private void download() {
+            synchronized (DownloadManager.this) {
+                if (mCancelled)
+                    return;
+                mStarted = true;
+            }
+
+            File part = new File(mDirectory, mKey + PART_SUFFIX);
+            try {
+                if (!mDirectory.isDirectory() && !mDirectory.mkdirs())
+                    throw new IOException("unable to create " + mDirectory);
+
+                IOException lastError = null;
+                for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
+                    if (mCancelled)
+                        return;
+                    try {
+                        if (fetch(part))
+                            break;
+                        return;
+                    } catch (InterruptedIOException e) {
+                        if (mCancelled)
+                            return;
+                        lastError = e;
+                    } catch (ChecksumException e) {
+                        throw e;
+                    } catch (IOException e) {
+                        if (mCancelled)
+                            return;
+                        lastError = e;
+                        Log.d(TAG, "attempt " + attempt + " failed for " + mUrl + ": " + e);
+                    }
+                    if (attempt == MAX_RETRIES - 1)
+                        throw lastError;
+                }
+
+                verify(part);
+                File file = new File(mDirectory, mKey);
+                if (!part.renameTo(file))
+                    throw new IOException("unable to move " + part + " to " + file);
+                postCompleted(mUrl, file);
+            } catch (ChecksumException e) {
+                deleteFile(part);
+                Log.w(TAG, "download corrupt: " + mUrl, e);
+                postFailed(mUrl, e);
+            } catch (IOException e) {
+                Log.w(TAG, "download failed: " + mUrl, e);
+                postFailed(mUrl, e);
+            } finally {
+                onTaskFinished(this);
+            }
+        }
+
+        /**
+         * Appends the rest of the content to {@code part}.
+         *
+         * @return false if cancelled
+         */
+        private boolean fetch(File part) throws IOException {
+            long offset = part.length();
+            HttpURLConnection connection = (HttpURLConnection) new URL(mUrl).openConnection();
+            mConnection = connection;
+            try {
+                connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+                connection.setReadTimeout(READ_TIMEOUT_MS);
+                connection.setRequestProperty("Accept-Encoding", "identity");
+                if (mHeaders != null) {
+                    for (Map.Entry<String, String> entry : mHeaders.entrySet()) {
+                        connection.setRequestProperty(entry.getKey(), entry.getValue());
+                    }
+                }
+                if (offset > 0)
+                    connection.setRequestProperty("Range", "bytes=" + offset + "-");
+
+                int code = connection.getResponseCode();
+                long total;
+                if (code == HttpURLConnection.HTTP_PARTIAL) {
+                    String contentRange = connection.getHeaderField("Content-Range");
+                    int slash = contentRange == null ? -1 : contentRange.lastIndexOf('/');
+                    total = slash >= 0 ? parseLong(contentRange.substring(slash + 1)) : -1;
+                } else if (code == 416 && offset > 0) {
+                    // the part file already holds everything
+                    return true;
+                } else if (code == HttpURLConnection.HTTP_OK) {
+                    // range not honoured, start over
+                    offset = 0;
+                    total = connection.getContentLength() >= 0 ? connection.getContentLength() : -1;
+                } else {
+                    throw new IOException("HTTP " + code + " for " + mUrl);
+                }
+
+                InputStream in = connection.getInputStream();
+                OutputStream out = new FileOutputStream(part, offset > 0);
+                try {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    long downloaded = offset;
+                    int count;
+                    while ((count = in.read(buffer)) != -1) {
+                        if (mCancelled)
+                            return false;
+                        out.write(buffer, 0, count);
+                        downloaded += count;
+                        long now = SystemClock.elapsedRealtime();
+                        if (now - mLastProgressTime >= PROGRESS_INTERVAL_MS) {
+                            mLastProgressTime = now;
+                            postProgress(mUrl, downloaded, total);
+                        }
+                    }
+                    if (total >= 0 && downloaded < total)
+                        throw new IOException("unexpected end of stream at " + downloaded + "/" + total);
+                    postProgress(mUrl, downloaded, downloaded);
+                } finally {
+                    out.close();
+                    in.close();
+                }
+                return !mCancelled;
+            } finally {
+                mConnection = null;
+                connection.disconnect();
+            }
+        }
+
+        private void verify(File part) throws IOException {
+            if (mChecksum == null)
+                return;
+
+            MessageDigest digest = newDigest(mChecksum);
+            InputStream in = new FileInputStream(part);
+            try {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, count);
+                }
+            } finally {
+                in.close();
+            }
+            String actual = toHex(digest.digest());
+            if (!actual.equals(mChecksum))
+                throw new ChecksumException("checksum mismatch for " + mUrl + ": " + actual);
+        }
+
+        // must hold DownloadManager.this
+        void cancel() {
+            mCancelled = true;
+            HttpURLConnection connection = mConnection;
+            if (connection != null)
+                connection.disconnect();
+        }
+
+        @Override
+        public int compareTo(@NonNull Task other) {
+            if (mPriority != other.mPriority)
+                return mPriority > other.mPriority ? -1 : 1;
+            return Integer.compare(mOrder, other.mOrder);
+        }
+    }
+}
@@ -0,0 +1,547 @@
+package com.dailyyoga.cn.media.proxy;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loopback HTTP proxy caching progressive media on disk for every player backend.
+ * <p>
+ * {@link #getProxyUrl(String, Map)} rewrites an http(s) URL to {@code http://127.0.0.1:<port>/...}.
+ * Requests for that URL, including Range requests, are served from the sparse cache file of
+ * the resource; gaps are fetched from upstream and written to disk while they are streamed to
+ * the player. The least recently used resources are evicted once the cache exceeds its budget.
+ * Manifests (HLS, DASH) reference other URLs and are never proxied.
+ */
+public class MediaCacheProxy {
+    private static final String TAG = "MediaCacheProxy";
+    public static final long DEFAULT_MAX_CACHE_BYTES = 512L * 1024 * 1024;
+    private static final String CACHE_DIRECTORY = "media_proxy_cache";
+    private static final int CONNECT_TIMEOUT_MS = 8000;
+    private static final int READ_TIMEOUT_MS = 8000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static MediaCacheProxy sInstance;
+
+    private final File mCacheDirectory;
+    private final ExecutorService mExecutor;
+    // guarded by this
+    private final Map<String, Source> mSources = new HashMap<>();
+    private final Map<String, ProxyCacheFile> mOpenFiles = new HashMap<>();
+    private ServerSocket mServerSocket;
+    private long mMaxCacheBytes = DEFAULT_MAX_CACHE_BYTES;
+
+    public static synchronized MediaCacheProxy getInstance(Context context) {
+        if (sInstance == null)
+            sInstance = new MediaCacheProxy(new File(context.getApplicationContext().getCacheDir(), CACHE_DIRECTORY));
+        return sInstance;
+    }
+
+    public MediaCacheProxy(File cacheDirectory) {
+        mCacheDirectory = cacheDirectory;
+        mExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "MediaCacheProxy");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static boolean isProxyable(String url) {
+        if (url == null)
+            return false;
+
+        String lower = url.toLowerCase(Locale.US);
+        if (!lower.startsWith("http://") && !lower.startsWith("https://"))
+            return false;
+
+        int end = lower.length();
+        int query = lower.indexOf('?');
+        if (query >= 0)
+            end = query;
+        int fragment = lower.indexOf('#');
+        if (fragment >= 0 && fragment < end)
+            end = fragment;
+        String path = lower.substring(0, end);
+        return !path.endsWith(".m3u8") && !path.endsWith(".mpd") && !path.endsWith(".ism/manifest");
+    }
+
+    /**
+     * @return the loopback URL serving {@code url} through the cache, or {@code url} itself when
+     * it can not be proxied or the proxy failed to start
+     */
+    public synchronized String getProxyUrl(String url, Map<String, String> headers) {
+        if (!isProxyable(url))
+            return url;
+
+        try {
+            startIfNeeded();
+        } catch (IOException e) {
+            Log.w(TAG, "unable to start proxy", e);
+            return url;
+        }
+
+        String key = keyOf(url);
+        mSources.put(key, new Source(url, headers));
+        String name = lastPathSegment(url);
+        try {
+            name = URLEncoder.encode(name, "UTF-8");
+        } catch (IOException e) {
+            name = "media";
+        }
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort() + "/" + key + "/" + name;
+    }
+
+    public synchronized void setMaxCacheBytes(long maxCacheBytes) {
+        mMaxCacheBytes = maxCacheBytes;
+        trimCache();
+    }
+
+    public synchronized long getMaxCacheBytes() {
+        return mMaxCacheBytes;
+    }
+
+    public synchronized long getCacheSize() {
+        long total = 0;
+        for (File file : listDataFiles()) {
+            total += file.length();
+        }
+        return total;
+    }
+
+    /**
+     * @return how many bytes of {@code url} are already on disk
+     */
+    public long getCachedBytes(String url) {
+        String key = keyOf(url);
+        ProxyCacheFile file;
+        try {
+            file = acquire(key);
+        } catch (IOException e) {
+            return 0;
+        }
+        try {
+            return file.getCachedBytes();
+        } finally {
+            release(key, file);
+        }
+    }
+
+    private void startIfNeeded() throws IOException {
+        if (mServerSocket != null)
+            return;
+
+        if (!mCacheDirectory.isDirectory() && !mCacheDirectory.mkdirs())
+            throw new IOException("unable to create " + mCacheDirectory);
+
+        final ServerSocket serverSocket = new ServerSocket(0, 16, InetAddress.getByName("127.0.0.1"));
+        Thread thread = new Thread(() -> acceptLoop(serverSocket), "MediaCacheProxy-accept");
+        thread.setDaemon(true);
+        thread.start();
+        mServerSocket = serverSocket;
+    }
+
+    private void acceptLoop(ServerSocket serverSocket) {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                mExecutor.execute(() -> handle(socket));
+            } catch (IOException e) {
+                Log.w(TAG, "accept failed", e);
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try {
+            socket.setSoTimeout(READ_TIMEOUT_MS);
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+
+            String requestLine = readLine(in);
+            String[] parts = requestLine != null ? requestLine.split(" ") : new String[0];
+            long rangeStart = 0;
+            long rangeEnd = -1;
+            boolean hasRange = false;
+            String line;
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Range")) {
+                    long[] range = parseRange(line.substring(colon + 1).trim());
+                    if (range != null) {
+                        hasRange = true;
+                        rangeStart = range[0];
+                        rangeEnd = range[1];
+                    }
+                }
+            }
+
+            if (parts.length < 2) {
+                writeStatus(out, "400 Bad Request");
+                return;
+            }
+
+            String path = parts[1];
+            int slash = path.indexOf('/', 1);
+            String key = slash > 0 ? path.substring(1, slash) : path.substring(1);
+            Source source;
+            synchronized (this) {
+                source = mSources.get(key);
+            }
+            if (source == null) {
+                writeStatus(out, "404 Not Found");
+                return;
+            }
+
+            ProxyCacheFile file = acquire(key);
+            try {
+                serve(source, file, out, "HEAD".equals(parts[0]), hasRange, rangeStart, rangeEnd);
+            } finally {
+                release(key, file);
+            }
+        } catch (IOException e) {
+            // the player closes connections it no longer needs, e.g. after a seek
+            Log.d(TAG, "request ended: " + e);
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void serve(Source source, ProxyCacheFile file, OutputStream out, boolean headOnly,
+                       boolean hasRange, long rangeStart, long rangeEnd) throws IOException {
+        Upstream pending = null;
+        try {
+            long length = file.getLength();
+            if (length < 0) {
+                pending = openUpstream(source, rangeStart);
+                length = pending.mLength;
+                if (length < 0) {
+                    // unknown length (e.g. chunked live stream), pass it through uncached
+                    writeHeaders(out, "200 OK", pending.mMimeType, -1, null);
+                    if (!headOnly)
+                        copy(pending.mStream, out);
+                    return;
+                }
+                file.setLength(length, pending.mMimeType);
+            }
+
+            if (rangeStart >= length) {
+                writeHeaders(out, "416 Range Not Satisfiable", null, 0, "bytes */" + length);
+                return;
+            }
+
+            long end = rangeEnd < 0 || rangeEnd >= length ? length - 1 : rangeEnd;
+            if (hasRange) {
+                writeHeaders(out, "206 Partial Content", file.getMimeType(), end - rangeStart + 1,
+                        "bytes " + rangeStart + "-" + end + "/" + length);
+            } else {
+                writeHeaders(out, "200 OK", file.getMimeType(), length, null);
+            }
+            if (headOnly)
+                return;
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long position = rangeStart;
+            while (position <= end) {
+                long cachedEnd = file.getCachedEnd(position);
+                if (cachedEnd > position) {
+                    long stop = Math.min(cachedEnd - 1, end);
+                    while (position <= stop) {
+                        int read = file.read(position, buffer, (int) Math.min(buffer.length, stop - position + 1));
+                        if (read <= 0)
+                            throw new IOException("cache file truncated at " + position);
+                        out.write(buffer, 0, read);
+                        position += read;
+                    }
+                    continue;
+                }
+
+                long gapEnd = Math.min(end, file.getNextCachedStart(position) - 1);
+                if (pending == null || pending.mStart != position) {
+                    if (pending != null)
+                        pending.close();
+                    pending = openUpstream(source, position);
+                }
+                while (position <= gapEnd) {
+                    int read = pending.mStream.read(buffer, 0, (int) Math.min(buffer.length, gapEnd - position + 1));
+                    if (read < 0)
+                        throw new IOException("upstream ended at " + position);
+                    file.write(position, buffer, read);
+                    out.write(buffer, 0, read);
+                    position += read;
+                    pending.mStart = position;
+                }
+            }
+            out.flush();
+        } finally {
+            if (pending != null)
+                pending.close();
+            file.flush();
+        }
+    }
+
+    private Upstream openUpstream(Source source, long start) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(source.mUrl).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        connection.setRequestProperty("Accept-Encoding", "identity");
+        if (source.mHeaders != null) {
+            for (Map.Entry<String, String> entry : source.mHeaders.entrySet()) {
+                connection.setRequestProperty(entry.getKey(), entry.getValue());
+            }
+        }
+        if (start > 0)
+            connection.setRequestProperty("Range", "bytes=" + start + "-");
+
+        int code = connection.getResponseCode();
+        long length = -1;
+        if (code == HttpURLConnection.HTTP_PARTIAL) {
+            String contentRange = connection.getHeaderField("Content-Range");
+            int slash = contentRange == null ? -1 : contentRange.lastIndexOf('/');
+            if (slash >= 0) {
+                try {
+                    length = Long.parseLong(contentRange.substring(slash + 1).trim());
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        } else if (code == HttpURLConnection.HTTP_OK) {
+            length = parseLong(connection.getHeaderField("Content-Length"));
+        } else {
+            connection.disconnect();
+            throw new IOException("HTTP " + code + " for " + source.mUrl);
+        }
+
+        Upstream upstream = new Upstream(connection, start, length);
+        if (code == HttpURLConnection.HTTP_OK && start > 0) {
+            // server ignored the range, skip up to the requested position
+            long skipped = 0;
+            while (skipped < start) {
+                long count = upstream.mStream.skip(start - skipped);
+                if (count <= 0) {
+                    upstream.close();
+                    throw new IOException("unable to skip to " + start + " in " + source.mUrl);
+                }
+                skipped += count;
+            }
+        }
+        return upstream;
+    }
+
+    private ProxyCacheFile acquire(String key) throws IOException {
+        synchronized (this) {
+            ProxyCacheFile file = mOpenFiles.get(key);
+            if (file == null) {
+                if (!mCacheDirectory.isDirectory() && !mCacheDirectory.mkdirs())
+                    throw new IOException("unable to create " + mCacheDirectory);
+                file = new ProxyCacheFile(mCacheDirectory, key);
+                mOpenFiles.put(key, file);
+            }
+            file.mRefCount++;
+            return file;
+        }
+    }
+
+    private void release(String key, ProxyCacheFile file) {
+        synchronized (this) {
+            if (--file.mRefCount > 0)
+                return;
+
+            mOpenFiles.remove(key);
+            try {
+                file.close();
+            } catch (IOException e) {
+                Log.w(TAG, "unable to close cache file " + key, e);
+            }
+            trimCache();
+        }
+    }
+
+    // must hold this
+    private void trimCache() {
+        List<File> files = listDataFiles();
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= mMaxCacheBytes)
+            return;
+
+        Collections.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (total <= mMaxCacheBytes)
+                break;
+
+            String name = file.getName();
+            String key = name.substring(0, name.length() - ProxyCacheFile.DATA_SUFFIX.length());
+            if (mOpenFiles.containsKey(key))
+                continue;
+
+            long size = file.length();
+            if (file.delete()) {
+                total -= size;
+                new File(mCacheDirectory, key + ProxyCacheFile.INDEX_SUFFIX).delete();
+            }
+        }
+    }
+
+    private List<File> listDataFiles() {
+        File[] files = mCacheDirectory.listFiles((dir, name) -> name.endsWith(ProxyCacheFile.DATA_SUFFIX));
+        return files != null ? new ArrayList<>(Arrays.asList(files)) : new ArrayList<File>();
+    }
+
+    private static void writeStatus(OutputStream out, String status) throws IOException {
+        writeHeaders(out, status, null, 0, null);
+        out.flush();
+    }
+
+    private static void writeHeaders(OutputStream out, String status, String mimeType,
+                                     long contentLength, String contentRange) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        builder.append("HTTP/1.1 ").append(status).append("\r\n");
+        if (mimeType != null)
+            builder.append("Content-Type: ").append(mimeType).append("\r\n");
+        if (contentLength >= 0)
+            builder.append("Content-Length: ").append(contentLength).append("\r\n");
+        if (contentRange != null)
+            builder.append("Content-Range: ").append(contentRange).append("\r\n");
+        builder.append("Accept-Ranges: bytes\r\n");
+        builder.append("Connection: close\r\n\r\n");
+        out.write(builder.toString().getBytes("ISO-8859-1"));
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+        out.flush();
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        int c;
+        while ((c = in.read()) >= 0) {
+            if (c == '\n')
+                break;
+            if (c != '\r')
+                builder.append((char) c);
+        }
+        return c < 0 && builder.length() == 0 ? null : builder.toString();
+    }
+
+    /**
+     * Parses a single {@code bytes=start-[end]} range; suffix and multi ranges are not used by
+     * the players and fall back to the whole resource.
+     */
+    private static long[] parseRange(String value) {
+        if (!value.startsWith("bytes=") || value.indexOf(',') >= 0)
+            return null;
+
+        String spec = value.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash <= 0)
+            return null;
+
+        long start = parseLong(spec.substring(0, dash));
+        long end = dash + 1 < spec.length() ? parseLong(spec.substring(dash + 1)) : -1;
+        if (start < 0 || (end >= 0 && end < start))
+            return null;
+        return new long[]{start, end};
+    }
+
+    private static long parseLong(String value) {
+        if (value == null)
+            return -1;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String lastPathSegment(String url) {
+        String path = url;
+        int end = path.length();
+        int query = path.indexOf('?');
+        if (query >= 0)
+            end = query;
+        path = path.substring(0, end);
+        int slash = path.lastIndexOf('/');
+        String name = slash >= 0 ? path.substring(slash + 1) : path;
+        return name.isEmpty() ? "media" : name;
+    }
+
+    private static String keyOf(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(url.getBytes("UTF-8"));
+            StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+                builder.append(Character.forDigit(b & 0xf, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            return Integer.toHexString(url.hashCode());
+        }
+    }
+
+    private static final class Source {
+        final String mUrl;
+        final Map<String, String> mHeaders;
+
+        Source(String url, Map<String, String> headers) {
+            mUrl = url;
+            mHeaders = headers;
+        }
+    }
+
+    private static final class Upstream {
+        final HttpURLConnection mConnection;
+        final InputStream mStream;
+        final long mLength;
+        final String mMimeType;
+        long mStart;
+
+        Upstream(HttpURLConnection connection, long start, long length) throws IOException {
+            mConnection = connection;
+            mStream = new BufferedInputStream(connection.getInputStream(), BUFFER_SIZE);
+            mStart = start;
+            mLength = length;
+            mMimeType = connection.getContentType();
+        }
+
+        void close() {
+            try {
+                mStream.close();
+            } catch (IOException ignored) {
+            }
+            mConnection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.dailyyoga.cn.media.proxy;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Sparse on-disk copy of one upstream resource.
+ * <p>
+ * Bytes are written at their real offset in {@code <key>.data}; the ranges that are present
+ * are tracked in memory and persisted to {@code <key>.idx} together with the resource length
+ * and content type, so a partially downloaded resource survives process restarts.
+ */
+class ProxyCacheFile {
+    static final String DATA_SUFFIX = ".data";
+    static final String INDEX_SUFFIX = ".idx";
+    private static final int INDEX_VERSION = 1;
+
+    private final File mDataFile;
+    private final File mIndexFile;
+    private final RandomAccessFile mData;
+    // start -> end (exclusive), non-overlapping and non-adjacent
+    private final TreeMap<Long, Long> mRanges = new TreeMap<>();
+    private long mLength = -1;
+    private String mMimeType;
+    private boolean mIndexDirty;
+    int mRefCount;
+
+    ProxyCacheFile(File directory, String key) throws IOException {
+        mDataFile = new File(directory, key + DATA_SUFFIX);
+        mIndexFile = new File(directory, key + INDEX_SUFFIX);
+        mData = new RandomAccessFile(mDataFile, "rw");
+        try {
+            loadIndex();
+        } catch (IOException e) {
+            // a corrupt index only costs a re-download
+            mRanges.clear();
+            mLength = -1;
+            mMimeType = null;
+        }
+        mDataFile.setLastModified(System.currentTimeMillis());
+    }
+
+    private void loadIndex() throws IOException {
+        if (!mIndexFile.exists())
+            return;
+
+        DataInputStream in = new DataInputStream(new FileInputStream(mIndexFile));
+        try {
+            if (in.readInt() != INDEX_VERSION)
+                return;
+
+            mLength = in.readLong();
+            String mimeType = in.readUTF();
+            mMimeType = mimeType.isEmpty() ? null : mimeType;
+            int count = in.readInt();
+            long dataLength = mData.length();
+            for (int i = 0; i < count; i++) {
+                long start = in.readLong();
+                long end = Math.min(in.readLong(), dataLength);
+                if (start < end)
+                    mRanges.put(start, end);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    synchronized long getLength() {
+        return mLength;
+    }
+
+    synchronized String getMimeType() {
+        return mMimeType;
+    }
+
+    /**
+     * Records the resource length; a different length than the cached one means the
+     * resource changed upstream and drops everything cached so far.
+     */
+    synchronized void setLength(long length, String mimeType) throws IOException {
+        if (mLength != length) {
+            mRanges.clear();
+            mData.setLength(0);
+        }
+        mLength = length;
+        mMimeType = mimeType;
+        mIndexDirty = true;
+    }
+
+    /**
+     * @return end (exclusive) of the cached range containing {@code position}, or -1
+     */
+    synchronized long getCachedEnd(long position) {
+        Map.Entry<Long, Long> entry = mRanges.floorEntry(position);
+        return entry != null && entry.getValue() > position ? entry.getValue() : -1;
+    }
+
+    /**
+     * @return start of the first cached range after {@code position}, or {@link Long#MAX_VALUE}
+     */
+    synchronized long getNextCachedStart(long position) {
+        Long start = mRanges.higherKey(position);
+        return start != null ? start : Long.MAX_VALUE;
+    }
+
+    synchronized long getCachedBytes() {
+        long total = 0;
+        for (Map.Entry<Long, Long> entry : mRanges.entrySet()) {
+            total += entry.getValue() - entry.getKey();
+        }
+        return total;
+    }
+
+    synchronized int read(long position, byte[] buffer, int size) throws IOException {
+        mData.seek(position);
+        return mData.read(buffer, 0, size);
+    }
+
+    synchronized void write(long position, byte[] buffer, int size) throws IOException {
+        mData.seek(position);
+        mData.write(buffer, 0, size);
+        addRange(position, position + size);
+        mIndexDirty = true;
+    }
+
+    private void addRange(long start, long end) {
+        Map.Entry<Long, Long> floor = mRanges.floorEntry(start);
+        if (floor != null && floor.getValue() >= start) {
+            start = floor.getKey();
+            end = Math.max(end, floor.getValue());
+        }
+
+        Iterator<Map.Entry<Long, Long>> iterator = mRanges.tailMap(start, true).entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Long> entry = iterator.next();
+            if (entry.getKey() > end)
+                break;
+            end = Math.max(end, entry.getValue());
+            iterator.remove();
+        }
+        mRanges.put(start, end);
+    }
+
+    synchronized void flush() throws IOException {
+        if (!mIndexDirty)
+            return;
+
+        File temp = new File(mIndexFile.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(temp));
+        try {
+            out.writeInt(INDEX_VERSION);
+            out.writeLong(mLength);
+            out.writeUTF(mMimeType != null ? mMimeType : "");
+            out.writeInt(mRanges.size());
+            for (Map.Entry<Long, Long> entry : mRanges.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(mIndexFile))
+            throw new IOException("unable to write index " + mIndexFile);
+        mIndexDirty = false;
+    }
+
+    synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            mData.close();
+            mDataFile.setLastModified(System.currentTimeMillis());
+        }
+    }
+}
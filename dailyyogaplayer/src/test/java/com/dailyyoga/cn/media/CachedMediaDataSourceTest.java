@@ -0,0 +1,110 @@
+package com.dailyyoga.cn.media;
+
+import com.dailyyoga.cn.media.misc.IMediaDataSource;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CachedMediaDataSourceTest {
+    private static final int PAGE_SIZE = 1024;
+
+    @Test
+    public void shortReadInTheMiddleIsNotCachedAsEndOfFile() throws IOException {
+        byte[] content = content(10 * PAGE_SIZE);
+        FlakyDataSource upstream = new FlakyDataSource(content);
+        // the first fill of page 2 stops after 100 bytes
+        upstream.mStallAt = 2 * PAGE_SIZE + 100;
+        MediaDataSourceBlockCache cache = new MediaDataSourceBlockCache(PAGE_SIZE, 64 * PAGE_SIZE);
+        CachedMediaDataSource source = new CachedMediaDataSource(upstream, "flaky", cache);
+
+        byte[] buffer = new byte[PAGE_SIZE];
+        int read = source.readAt(2 * PAGE_SIZE, buffer, 0, PAGE_SIZE);
+        assertEquals(100, read);
+
+        // past the short read: served from upstream, not reported as EOF
+        read = source.readAt(2 * PAGE_SIZE + 500, buffer, 0, 10);
+        assertEquals(10, read);
+        assertArrayEquals(Arrays.copyOfRange(content, 2 * PAGE_SIZE + 500, 2 * PAGE_SIZE + 510),
+                Arrays.copyOf(buffer, 10));
+
+        // the page is refilled completely once the upstream recovers
+        assertReadFully(source, content, 2 * PAGE_SIZE, PAGE_SIZE);
+        assertReadFully(source, content, 0, content.length);
+    }
+
+    @Test
+    public void lastShortPageIsCached() throws IOException {
+        byte[] content = content(3 * PAGE_SIZE + 10);
+        FlakyDataSource upstream = new FlakyDataSource(content);
+        MediaDataSourceBlockCache cache = new MediaDataSourceBlockCache(PAGE_SIZE, 64 * PAGE_SIZE);
+        CachedMediaDataSource source = new CachedMediaDataSource(upstream, "tail", cache);
+
+        byte[] buffer = new byte[PAGE_SIZE];
+        assertEquals(10, source.readAt(3 * PAGE_SIZE, buffer, 0, PAGE_SIZE));
+        int reads = upstream.mReads;
+        assertEquals(10, source.readAt(3 * PAGE_SIZE, buffer, 0, PAGE_SIZE));
+        assertEquals("tail page served from the cache", reads, upstream.mReads);
+        assertEquals(-1, source.readAt(content.length, buffer, 0, PAGE_SIZE));
+    }
+
+    private static void assertReadFully(IMediaDataSource source, byte[] content, int position, int size)
+            throws IOException {
+        byte[] buffer = new byte[size];
+        int total = 0;
+        while (total < size) {
+            int read = source.readAt(position + total, buffer, total, size - total);
+            if (read <= 0)
+                throw new AssertionError("early EOF at " + (position + total));
+            total += read;
+        }
+        assertArrayEquals(Arrays.copyOfRange(content, position, position + size), buffer);
+    }
+
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        new Random(3).nextBytes(content);
+        return content;
+    }
+
+    private static class FlakyDataSource implements IMediaDataSource {
+        private final byte[] mContent;
+        long mStallAt = -1;
+        int mReads;
+
+        FlakyDataSource(byte[] content) {
+            mContent = content;
+        }
+
+        @Override
+        public int readAt(long position, byte[] buffer, int offset, int size) {
+            mReads++;
+            if (position >= mContent.length)
+                return -1;
+            int count = (int) Math.min(size, mContent.length - position);
+            if (mStallAt >= 0 && position < mStallAt && position + count > mStallAt) {
+                count = (int) (mStallAt - position);
+            } else if (position == mStallAt) {
+                // a transient hiccup: nothing this time, fine afterwards
+                mStallAt = -1;
+                return 0;
+            }
+            System.arraycopy(mContent, (int) position, buffer, offset, count);
+            return count;
+        }
+
+        @Override
+        public long getSize() {
+            return mContent.length;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
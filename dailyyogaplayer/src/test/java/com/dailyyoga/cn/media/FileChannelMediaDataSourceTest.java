@@ -0,0 +1,183 @@
+package com.dailyyoga.cn.media;
+
+import com.dailyyoga.cn.media.misc.IMediaDataSource;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Positional reads of {@link FileChannelMediaDataSource} against the seek+read
+ * {@link FileMediaDataSource}, plus a random-access throughput comparison of the two.
+ */
+public class FileChannelMediaDataSourceTest {
+    private static final int FILE_SIZE = 4 * 1024 * 1024 + 123;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private byte[] mContent;
+    private File mFile;
+    private FileChannelMediaDataSource mChannelSource;
+    private FileMediaDataSource mFileSource;
+
+    @Before
+    public void setUp() throws IOException {
+        mContent = new byte[FILE_SIZE];
+        new Random(42).nextBytes(mContent);
+        mFile = mFolder.newFile("media.bin");
+        FileOutputStream out = new FileOutputStream(mFile);
+        out.write(mContent);
+        out.close();
+
+        mChannelSource = new FileChannelMediaDataSource(mFile);
+        mFileSource = new FileMediaDataSource(mFile);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mChannelSource.close();
+        mFileSource.close();
+    }
+
+    @Test
+    public void getSize() throws IOException {
+        assertEquals(FILE_SIZE, mChannelSource.getSize());
+        assertEquals(FILE_SIZE, mFileSource.getSize());
+    }
+
+    @Test
+    public void readAtArbitraryOffsetsMatchesFile() throws IOException {
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            long position = random.nextInt(FILE_SIZE);
+            int size = 1 + random.nextInt(64 * 1024);
+            int offset = random.nextInt(128);
+            assertReadMatches(mChannelSource, position, offset, size);
+            assertReadMatches(mFileSource, position, offset, size);
+        }
+    }
+
+    @Test
+    public void readAtHonorsBufferOffset() throws IOException {
+        for (IMediaDataSource source : new IMediaDataSource[]{mChannelSource, mFileSource}) {
+            byte[] buffer = new byte[32];
+            Arrays.fill(buffer, (byte) 0x5a);
+            assertEquals(16, source.readAt(1000, buffer, 10, 16));
+
+            for (int i = 0; i < 10; i++)
+                assertEquals("byte before offset overwritten", 0x5a, buffer[i]);
+            for (int i = 0; i < 16; i++)
+                assertEquals(mContent[1000 + i], buffer[10 + i]);
+            for (int i = 26; i < 32; i++)
+                assertEquals("byte after size overwritten", 0x5a, buffer[i]);
+        }
+    }
+
+    @Test
+    public void readAtEndOfFile() throws IOException {
+        for (IMediaDataSource source : new IMediaDataSource[]{mChannelSource, mFileSource}) {
+            byte[] buffer = new byte[100];
+            // straddles EOF: only the tail is returned
+            assertEquals(23, source.readAt(FILE_SIZE - 23, buffer, 0, 100));
+            assertArrayEquals(Arrays.copyOfRange(mContent, FILE_SIZE - 23, FILE_SIZE),
+                    Arrays.copyOfRange(buffer, 0, 23));
+
+            assertEquals(-1, source.readAt(FILE_SIZE, buffer, 0, 100));
+            assertEquals(-1, source.readAt(FILE_SIZE + 1000, buffer, 0, 100));
+            assertEquals(0, source.readAt(0, buffer, 0, 0));
+        }
+    }
+
+    @Test
+    public void readAtDirectByteBuffer() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+        assertEquals(4096, mChannelSource.readAt(FILE_SIZE / 2, buffer));
+        buffer.flip();
+        byte[] read = new byte[4096];
+        buffer.get(read);
+        assertArrayEquals(Arrays.copyOfRange(mContent, FILE_SIZE / 2, FILE_SIZE / 2 + 4096), read);
+    }
+
+    @Test
+    public void concurrentReadsDoNotRace() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] futures = new Future<?>[4];
+            for (int t = 0; t < futures.length; t++) {
+                final long seed = t;
+                futures[t] = executor.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 300; i++) {
+                        assertReadMatches(mChannelSource, random.nextInt(FILE_SIZE), 0,
+                                1 + random.nextInt(16 * 1024));
+                    }
+                    return null;
+                });
+            }
+            for (Future<?> future : futures)
+                future.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Not a pass/fail check: prints the random-access throughput of both sources so a
+     * change to either can be compared on the same machine. Skipped unless run with
+     * {@code -Dbenchmark=true}.
+     */
+    @Test
+    public void benchmarkRandomAccess() throws IOException {
+        Assume.assumeTrue("benchmark disabled", Boolean.getBoolean("benchmark"));
+
+        // warm up the page cache and the JIT
+        randomReads(mChannelSource, 200);
+        randomReads(mFileSource, 200);
+
+        long channelNs = randomReads(mChannelSource, 2000);
+        long fileNs = randomReads(mFileSource, 2000);
+        System.out.println(String.format("random 16 KiB reads x2000: FileChannel %d ms, RandomAccessFile %d ms",
+                TimeUnit.NANOSECONDS.toMillis(channelNs), TimeUnit.NANOSECONDS.toMillis(fileNs)));
+    }
+
+    private static long randomReads(IMediaDataSource source, int count) throws IOException {
+        Random random = new Random(1);
+        byte[] buffer = new byte[16 * 1024];
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++)
+            source.readAt(random.nextInt(FILE_SIZE), buffer, 0, buffer.length);
+        return System.nanoTime() - start;
+    }
+
+    private void assertReadMatches(IMediaDataSource source, long position, int offset, int size)
+            throws IOException {
+        byte[] buffer = new byte[offset + size];
+        int read = source.readAt(position, buffer, offset, size);
+        int expected = (int) Math.min(size, FILE_SIZE - position);
+        // RandomAccessFile may return less than asked, never more
+        if (source instanceof FileChannelMediaDataSource)
+            assertEquals(expected, read);
+        else
+            assertEquals(true, read > 0 && read <= expected);
+        assertArrayEquals(Arrays.copyOfRange(mContent, (int) position, (int) position + read),
+                Arrays.copyOfRange(buffer, offset, offset + read));
+    }
+}
@@ -0,0 +1,44 @@
+package com.dailyyoga.cn.media;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PVOptionsTest {
+
+    @Test
+    public void mediaDataSourceIsNeverUsedWithExo() {
+        PVOptions options = new PVOptions();
+        options.setUsingMediaDataSource(true);
+        options.setHttpRangeConnections(3);
+
+        // Exo inherits AbstractMediaPlayer.setDataSource(IMediaDataSource), which throws
+        options.setPlayer(PVOptions.PV_PLAYER_DAILYYOGA_EXO_MEDIA_PLAYER);
+        assertFalse(options.isMediaDataSourceApplicable());
+
+        options.setPlayer(PVOptions.PV_PLAYER_ANDROID_MEDIA_PLAYER);
+        assertTrue(options.isMediaDataSourceApplicable());
+        options.setPlayer(PVOptions.PV_PLAYER_IJK_MEDIA_PLAYER);
+        assertTrue(options.isMediaDataSourceApplicable());
+    }
+
+    @Test
+    public void downloadedFilesOnExoStayOnTheUriPath() {
+        // the example app's "use MediaDataSource" setting, then switching to Exo
+        PVOptions options = new PVOptions();
+        options.setUsingMediaDataSource(true);
+        options.setPlayer(PVOptions.PV_PLAYER_DAILYYOGA_EXO_MEDIA_PLAYER);
+        assertFalse(options.isMediaDataSourceApplicable());
+    }
+
+    @Test
+    public void mediaDataSourceOffForEveryPlayer() {
+        PVOptions options = new PVOptions();
+        for (int player : new int[]{PVOptions.PV_PLAYER_ANDROID_MEDIA_PLAYER,
+                PVOptions.PV_PLAYER_IJK_MEDIA_PLAYER, PVOptions.PV_PLAYER_DAILYYOGA_EXO_MEDIA_PLAYER}) {
+            options.setPlayer(player);
+            assertFalse(options.isMediaDataSourceApplicable());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.dailyyoga.cn.media;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link RangeHttpMediaDataSource} against an embedded HTTP server that honors or ignores
+ * Range requests and can drop responses half way.
+ */
+public class RangeHttpMediaDataSourceTest {
+    private static final int CONTENT_SIZE = 1024 * 1024 + 77;
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private byte[] mContent;
+    private HttpServer mServer;
+    private String mUrl;
+    private RangeHttpMediaDataSource mSource;
+
+    private volatile boolean mRangeSupported = true;
+    // range responses still to cut off after half of their body
+    private final AtomicInteger mDropsLeft = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        mContent = new byte[CONTENT_SIZE];
+        new Random(11).nextBytes(mContent);
+
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/media", this::handle);
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/media";
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (mSource != null)
+            mSource.close();
+        mServer.stop(0);
+    }
+
+    @Test
+    public void partialContentIsReadCompletely() throws IOException {
+        mSource = new RangeHttpMediaDataSource(mUrl, null, 3, CHUNK_SIZE, 4);
+        assertEquals(CONTENT_SIZE, mSource.getSize());
+        assertReadFully(0, CONTENT_SIZE);
+        assertEquals(-1, mSource.readAt(CONTENT_SIZE, new byte[16], 0, 16));
+        assertFalse(mSource.isProbeFailed());
+    }
+
+    @Test
+    public void seekAheadReadsTheRightChunk() throws IOException {
+        mSource = new RangeHttpMediaDataSource(mUrl, null, 3, CHUNK_SIZE, 4);
+        assertReadFully(CONTENT_SIZE - 1000, 1000);
+        assertReadFully(5 * CHUNK_SIZE + 17, 3 * CHUNK_SIZE);
+    }
+
+    @Test
+    public void okWithoutRangeFailsTheProbe() {
+        mRangeSupported = false;
+        mSource = new RangeHttpMediaDataSource(mUrl, null, 3, CHUNK_SIZE, 4);
+        try {
+            mSource.getSize();
+            fail("a 200 answer has no size to probe");
+        } catch (IOException expected) {
+        }
+        assertTrue(mSource.isProbeFailed());
+    }
+
+    @Test
+    public void midStreamDropIsRetried() throws IOException {
+        mSource = new RangeHttpMediaDataSource(mUrl, null, 1, CHUNK_SIZE, 4);
+        mSource.getSize();
+        mDropsLeft.set(1);
+        assertReadFully(0, CONTENT_SIZE);
+    }
+
+    @Test
+    public void persistentFailureIsNotPermanent() throws IOException {
+        mSource = new RangeHttpMediaDataSource(mUrl, null, 1, CHUNK_SIZE, 1);
+        mSource.getSize();
+        mDropsLeft.set(Integer.MAX_VALUE);
+        try {
+            mSource.readAt(CHUNK_SIZE / 2 + CHUNK_SIZE / 4, new byte[16], 0, 16);
+            fail("every attempt was dropped");
+        } catch (IOException expected) {
+        }
+
+        // the server recovers: the same source serves the chunk again
+        mDropsLeft.set(0);
+        assertReadFully(0, 3 * CHUNK_SIZE);
+    }
+
+    private void assertReadFully(int position, int size) throws IOException {
+        byte[] buffer = new byte[size];
+        int total = 0;
+        while (total < size) {
+            int read = mSource.readAt(position + total, buffer, total, size - total);
+            if (read <= 0)
+                throw new AssertionError("early EOF at " + (position + total));
+            total += read;
+        }
+        assertArrayEquals(Arrays.copyOfRange(mContent, position, position + size), buffer);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        OutputStream out = exchange.getResponseBody();
+        try {
+            if (!mRangeSupported || range == null) {
+                exchange.sendResponseHeaders(200, CONTENT_SIZE);
+                out.write(mContent);
+                return;
+            }
+
+            String[] bounds = range.substring("bytes=".length()).split("-");
+            int start = Integer.parseInt(bounds[0]);
+            int end = Math.min(Integer.parseInt(bounds[1]), CONTENT_SIZE - 1);
+            int length = end - start + 1;
+            exchange.getResponseHeaders().set("Content-Range",
+                    "bytes " + start + "-" + end + "/" + CONTENT_SIZE);
+            exchange.sendResponseHeaders(206, length);
+
+            // the probe asks for a single byte and is never dropped
+            if (length > 1 && mDropsLeft.getAndUpdate(left -> left > 0 ? left - 1 : 0) > 0) {
+                out.write(mContent, start, length / 2);
+                out.flush();
+                // closing short of the announced length drops the connection
+                return;
+            }
+            out.write(mContent, start, length);
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.dailyyoga.cn.media.download;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pause and resume of {@link DownloadManager} against an embedded HTTP server that streams
+ * slowly, so a download can be caught mid-transfer.
+ */
+public class DownloadManagerTest {
+    private static final int CONTENT_SIZE = 2 * 1024 * 1024 + 321;
+    private static final int SLICE = 16 * 1024;
+    private static final long TIMEOUT_MS = 20000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private byte[] mContent;
+    private HttpServer mServer;
+    private String mUrl;
+    private DownloadManager mManager;
+
+    @Before
+    public void setUp() throws IOException {
+        mContent = new byte[CONTENT_SIZE];
+        new Random(5).nextBytes(mContent);
+
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/", this::handle);
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/lesson.mp4";
+        mManager = new DownloadManager(mFolder.newFolder("offline"));
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void downloadAfterPauseResumesIntoTheSamePartFile() throws Exception {
+        String checksum = md5(mContent);
+        mManager.download(mUrl, null, checksum, DownloadManager.PRIORITY_NORMAL);
+        awaitDownloadedBytes(CONTENT_SIZE / 8);
+
+        // the paused task may still be in its write loop when the new one is queued
+        mManager.pause(mUrl);
+        mManager.download(mUrl, null, checksum, DownloadManager.PRIORITY_NORMAL);
+
+        File file = awaitDownloadedFile();
+        assertArrayEquals(mContent, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void repeatedPauseAndResumeKeepsTheDataConsistent() throws Exception {
+        String checksum = md5(mContent);
+        mManager.download(mUrl, null, checksum, DownloadManager.PRIORITY_NORMAL);
+        for (int i = 1; i <= 4; i++) {
+            awaitDownloadedBytes(i * CONTENT_SIZE / 6);
+            mManager.pause(mUrl);
+            mManager.download(mUrl, null, checksum, DownloadManager.PRIORITY_HIGH);
+        }
+
+        File file = awaitDownloadedFile();
+        assertArrayEquals(mContent, Files.readAllBytes(file.toPath()));
+    }
+
+    private void awaitDownloadedBytes(long bytes) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (mManager.getDownloadedBytes(mUrl) < bytes) {
+            assertTrue("no progress past " + mManager.getDownloadedBytes(mUrl),
+                    System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private File awaitDownloadedFile() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        File file;
+        while ((file = mManager.getDownloadedFile(mUrl)) == null) {
+            // a corrupt .part fails the checksum and never shows up here
+            assertTrue("download did not complete", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+        assertNotNull(file);
+        return file;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        int start = 0;
+        if (range != null) {
+            start = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+            exchange.getResponseHeaders().set("Content-Range",
+                    "bytes " + start + "-" + (CONTENT_SIZE - 1) + "/" + CONTENT_SIZE);
+            exchange.sendResponseHeaders(206, CONTENT_SIZE - start);
+        } else {
+            exchange.sendResponseHeaders(200, CONTENT_SIZE);
+        }
+
+        OutputStream out = exchange.getResponseBody();
+        try {
+            for (int position = start; position < CONTENT_SIZE; position += SLICE) {
+                out.write(mContent, position, Math.min(SLICE, CONTENT_SIZE - position));
+                Thread.sleep(2);
+            }
+        } catch (IOException | InterruptedException e) {
+            // the client disconnected on pause
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String md5(byte[] data) throws Exception {
+        StringBuilder builder = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("MD5").digest(data))
+            builder.append(String.format("%02x", b));
+        return builder.toString();
+    }
+}